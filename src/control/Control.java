@@ -5,10 +5,14 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
-import model.ai.Agent;
-import model.game.Board;
+import model.ai.RuleStats;
+import model.sim.Simulation;
+import model.sim.Tally;
 
-import java.util.Random;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Connects model and view.
@@ -22,10 +26,15 @@ public class Control {
     public TextField startRowField;
     public TextField startColField;
     public TextField seedField;
+    public TextField checkpointField;
+    public TextField resultLogField;
     public ProgressBar progressBar;
     public Button simulateButton;
+    public Button cancelButton;
     public TextArea outputArea;
 
+    private Simulation simulation;  // currently running simulation
+
     /**
      * Runner function.
      * 
@@ -39,42 +48,45 @@ public class Control {
             int rows = Integer.parseInt(rowsField.getText());
             int cols = Integer.parseInt(colsField.getText());
             int bombs = Integer.parseInt(bombsField.getText());
-            int simulations = Integer.parseInt(simulationsField.getText());
+            long simulations = Long.parseLong(simulationsField.getText());
             int startRow = Integer.parseInt(startRowField.getText());
             int startCol = Integer.parseInt(startColField.getText());
-            int seed = Integer.parseInt(seedField.getText());
+            long seed = Long.parseLong(seedField.getText());
             int start = startRow * cols + startCol;
+            String checkpoint = checkpointField.getText().trim();
 
-            // generate and solve board
-            Board board = new Board(rows, cols, bombs);
-            Agent agent = new Agent();
-            Random random = new Random(seed);
+            // set up simulation, optionally resuming from a checkpoint
+            Simulation sim = new Simulation(rows, cols, bombs, start, seed, simulations);
+            if (!checkpoint.isEmpty()) {
+                Path path = Paths.get(checkpoint);
+                sim.setCheckpoint(path, 10_000);
+            }
+            String resultLog = resultLogField.getText().trim();
+            if (!resultLog.isEmpty()) {
+                Path directory = Paths.get(resultLog);
+                Files.createDirectories(directory);
+                sim.setResultLog(directory);
+            }
 
             // run simulation in new thread to not block UI
-            Task<Double> runSim = new Task<Double>() {
+            Task<Tally> runSim = new Task<Tally>() {
                 /**
-                 * Randomly generate #simulations new boards
+                 * Play #simulations boards generated from the seed
                  * and attempt to solve them.
                  *
-                 * @return win rate
+                 * @return outcomes of all games played
                  */
                 @Override
-                protected Double call() {
-                    int wins = 0;
-                    for (int i = 1; i < simulations + 1; i++) {
-                        board.generate(start, random);
-                        agent.solve(board);
-                        if (board.won())
-                            wins++;
-                        updateProgress(i, simulations);
-                    }
-                    return wins * 100.0 / simulations;
+                protected Tally call() throws Exception {
+                    sim.setProgress(completed -> updateProgress(completed, simulations));
+                    return sim.run();
                 }
             };
 
             // lock button and show progress when simulation is running
             runSim.setOnRunning(event -> {
                 simulateButton.setDisable(true);
+                cancelButton.setDisable(false);
                 progressBar.setVisible(true);
                 outputArea.setText("...simulating");
             });
@@ -85,18 +97,56 @@ public class Control {
 
             // output result and unlock UI when task is finished
             runSim.setOnSucceeded(event -> {
-                simulateButton.setDisable(false);
-                progressBar.setVisible(false);
-                double winRate = runSim.getValue();
+                unlock();
+                Tally tally = runSim.getValue();
                 double duration = (1.0 * System.currentTimeMillis() - time) / 1000;
-                outputArea.setText("solved " + winRate + "% of boards in " + duration + " s");
+                String result = "solved " + tally.getWinRate() + "% of " + tally.getGames()
+                        + " boards in " + duration + " s";
+                for (RuleStats stats: sim.getRuleStats())
+                    result += "\n" + stats;
+                if (!resultLog.isEmpty())
+                    result += "\nresults logged to " + resultLog;
+                if (sim.isCancelled())
+                    result = "cancelled, " + result
+                            + (checkpoint.isEmpty() ? "" : "\nrestart to resume from " + checkpoint);
+                outputArea.setText(result);
+            });
+            runSim.setOnFailed(event -> {
+                unlock();
+                outputArea.setText("Simulation failed: " + runSim.getException().getMessage());
             });
 
-            new Thread(runSim).start();
+            simulation = sim;
+            Thread thread = new Thread(runSim, "simulation-control");
+            thread.setDaemon(true);
+            thread.start();
 
         } catch (NumberFormatException e) {
             outputArea.setText("All text fields only accept integers.");
+        } catch (IllegalArgumentException e) {
+            outputArea.setText(e.getMessage());
+        } catch (IOException e) {
+            outputArea.setText("Result log directory can not be created: " + e.getMessage());
         }
     }
 
+    /**
+     * Cancel the running simulation.
+     * Games played so far are still reported and checkpointed.
+     */
+    public void cancel() {
+        if (simulation != null)
+            simulation.cancel();
+    }
+
+    /**
+     * Unlock UI after a simulation finished.
+     */
+    private void unlock() {
+        simulation = null;
+        simulateButton.setDisable(false);
+        cancelButton.setDisable(true);
+        progressBar.setVisible(false);
+    }
+
 }
@@ -1,195 +1,184 @@
 package model.ai;
 
 import model.game.Board;
-import model.game.Square;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * Implements agent to solve a Minesweeper board.
  *
+ * Applies an ordered chain of rules.
+ * Later rules only run when all earlier rules fail to prove anything,
+ * so cheap rules should come first.
+ *
  * Requires a board.
  */
 public class Agent {
 
+    private final ArrayList<Rule> rules;        // rules in order of application
+    private final ArrayList<RuleStats> stats;   // statistics per rule
+    private int iterations;                     // rule applications of the last solve
+
+    /**
+     * Construct agent applying the trivial rule, then the subset rule.
+     */
+    public Agent() {
+        this(new TrivialRule(), new SubsetRule());
+    }
+
+    /**
+     * Construct agent applying rules in the given order.
+     *
+     * @param rules rules in order of application
+     */
+    public Agent(Rule... rules) {
+        this(Arrays.asList(rules));
+    }
+
+    /**
+     * Construct agent applying rules in the given order.
+     *
+     * @param rules rules in order of application
+     */
+    public Agent(List<Rule> rules) {
+        if (rules.isEmpty())
+            throw new IllegalArgumentException("agent requires at least one rule");
+        this.rules = new ArrayList<>(rules);
+        this.stats = new ArrayList<>(rules.size());
+        for (Rule rule: rules)
+            stats.add(new RuleStats(rule.getName()));
+    }
+
     /**
      * Deterministically solve a Minesweeper board.
      *
      * @param board to be solved
      */
     public void solve(Board board) {
-        ArrayList<Clue> clues;
-        // keep gathering clues and solve them
-        // while solving produces partial solutions
-        do {
-            clues = getClues(board.getSquares());
-            unravel(clues);
-        } while (eval(clues, board));
-        //printClues(clues);
+        iterations = 0;
+        Trace trace = Trace.get();
+        if (trace != null)
+            trace.begin(board.getCols());
+        int i = 0;
+        // apply rules in order and start over
+        // whenever a rule produces partial solutions
+        while (i < rules.size()) {
+            Deduction deduction = apply(i, board);
+            iterations++;
+            if (deduction.isEmpty()) {
+                i++;
+            } else {
+                if (trace != null)
+                    record(trace, deduction);
+                board.flagAll(deduction.getMines());
+                board.revealAll(deduction.getSafe());
+                i = 0;
+            }
+        }
     }
 
     /**
-     * Gather information from revealed squares with hidden unflagged neighbors.
+     * Determine which hidden squares are safe or bombs without revealing any.
+     * Proven bombs are flagged on the board since flagging reveals no hidden value.
      *
-     * @param squares list of all squares
-     * @return list of gathered clues
+     * @param board observed board
+     * @return proven safe squares and bombs
      */
-    private ArrayList<Clue> getClues(ArrayList<Square> squares) {
-        ArrayList<Clue> clues = new ArrayList<>();
-        // filter for squares which provide information
-        for (Square s: squares) {
-            if (s.hasInfo()) {
-                Clue c = new Clue();
-                // add all hidden unflagged neighbor ids
-                for (Square n : s.getNeighbors()) {
-                    if (n.isHiddenUnflagged())
-                        c.add(n.getId());
-                }
-                // number of unflagged neighboring bombs
-                c.setBombs(s.getRemainingValue());
-                clues.add(c);
+    public Deduction deduce(Board board) {
+        Trace trace = Trace.get();
+        if (trace != null)
+            trace.begin(board.getCols());
+        Deduction total = new Deduction();
+        int i = 0;
+        // flagging bombs may allow earlier rules to prove more
+        while (i < rules.size()) {
+            Deduction deduction = apply(i, board);
+            total.addSafe(deduction.getSafe());
+            if (total.addMines(deduction.getMines())) {
+                board.flagAll(deduction.getMines());
+                i = 0;
+            } else {
+                i++;
             }
         }
-        return clues;
+        return total;
     }
 
     /**
-     * Produce new information by combining clues.
+     * Apply a single rule and record its statistics.
      *
-     * @param clues list of clues
+     * @param i     index of rule
+     * @param board board to apply the rule to
+     * @return squares proven by the rule
      */
-    private void unravel(ArrayList<Clue> clues) {
-        int minBombs;   // minimum number of bombs that have to be in the intersection
-        int maxBombs;   // maximum number of bombs that can be in the intersection
-
-        int i = 0;  // index of current clue
-        int j;      // index of other clue being considered
-
-        /*
-         * iterate over clues while also updating them
-         * when this loop terminates no new information can be produced
-         */
-        while (i < clues.size()) {
-            j = -1;
-            /*
-             * check next clues that intersect with current clue
-             */
-            while ((j = getNextIntersecting(clues, i, j)) != -1) {
-                Clue x = clues.get(i);
-                Clue y = clues.get(j);
-                Clue z = x.intersect(y);
-
-                /*
-                 * minimum number of bombs that have to be in the intersection
-                 * = max (number of bombs - (size of clue - size of intersection))
-                 */
-                minBombs = Math.max(x.getBombs() - x.size() + z.size(), y.getBombs() - y.size() + z.size());
-                /*
-                 * maximum number of bombs that can be in the intersection
-                 * = min (number of bombs)
-                 */
-                maxBombs = Math.min(x.getBombs(), y.getBombs());
-
-                /*
-                 * if min and max bombs are equal
-                 * new information can be produced
-                 */
-                if (maxBombs == minBombs) {
-                    /*
-                     * check if x equals the intersection
-                     *
-                     * if not
-                     *  remove all ids contained in
-                     *  reduce number of bombs by number of bombs in intersection
-                     *
-                     * else
-                     *  x is now redundant
-                     *  remove x
-                     *  if x is positioned before y
-                     *   adjust pointer to y
-                     *
-                     * hold index in place because
-                     *  clue was updated and needs to be considered again
-                     *  or clue was removed so next clue is now at index
-                     */
-                    x.removeAll(z);
-                    if (x.isNotEmpty()) {
-                        x.setBombs(x.getBombs() - maxBombs);
-                    } else {
-                        clues.remove(i);
-                        if (i < j)
-                            j--;
-                    }
-                    i--;
-                    /*
-                     * same as for x
-                     */
-                    y.removeAll(z);
-                    if (y.isNotEmpty()) {
-                        y.setBombs(y.getBombs() - maxBombs);
-                    } else {
-                        clues.remove(j);
-                        if (j < i)
-                            i--;
-                    }
-                    /*
-                     * append new information
-                     */
-                    z.setBombs(maxBombs);
-                    clues.add(z);
-                    break;
-                }
-            }
-            i++;
-        }
+    private Deduction apply(int i, Board board) {
+        Deduction deduction = new Deduction();
+        long time = System.nanoTime();
+        rules.get(i).apply(board, deduction);
+        stats.get(i).record(deduction.size(), System.nanoTime() - time);
+        Trace trace = Trace.get();
+        if (trace != null)
+            trace.record(Trace.RULE, i, deduction.size());
+        return deduction;
     }
 
     /**
-     * Determine index of next intersecting clue.
+     * Record the squares an agent is about to flag and reveal.
      *
-     * @param clues list of clues
-     * @param i index of current clue
-     * @param j minimum index of next intersecting clue
-     * @return index of next intersecting clue
+     * @param trace     trace of the current thread
+     * @param deduction proven squares
+     */
+    private void record(Trace trace, Deduction deduction) {
+        for (int id: deduction.getMines())
+            trace.record(Trace.FLAG, 0, id);
+        for (int id: deduction.getSafe())
+            trace.record(Trace.REVEAL, 0, id);
+    }
+
+    /**
+     * Reorder rules by measured cost per deduction, cheapest first.
+     * Rules that never proved anything move to the end.
      */
-    private int getNextIntersecting(ArrayList<Clue> clues, int i, int j) {
-        Clue x = clues.get(i);
-        for (int k = j + 1; k < clues.size(); k++)
-            if (k != i && x.anyIntersection(clues.get(k)))
-                return k;
-        return -1;
+    public void sortByCost() {
+        Integer[] order = new Integer[rules.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> stats.get(i).getNanosPerDeduction()));
+        ArrayList<Rule> sortedRules = new ArrayList<>(rules.size());
+        ArrayList<RuleStats> sortedStats = new ArrayList<>(stats.size());
+        for (int i: order) {
+            sortedRules.add(rules.get(i));
+            sortedStats.add(stats.get(i));
+        }
+        rules.clear();
+        rules.addAll(sortedRules);
+        stats.clear();
+        stats.addAll(sortedStats);
     }
 
     /**
-     * Evaluate clues and take possible actions.
+     * Number of rule applications of the last solve, including those that proved nothing.
      *
-     * @param clues list of clues
-     * @param board Minesweeper board
-     * @return if any actions were taken
+     * @return rule applications
      */
-    private boolean eval(ArrayList<Clue> clues, Board board) {
-        boolean success = false;
-        for (Clue clue: clues)
-            // saturated clues can be flagged
-            if (clue.isSaturated()) {
-                board.flagAll(clue.getIds());
-                success = true;
-            // safe clues can be revealed
-            } else if (clue.isSafe()) {
-                board.revealAll(clue.getIds());
-                success = true;
-            }
-        return success;
+    public int getIterations() {
+        return iterations;
     }
 
-    public void printClues(ArrayList<Clue> clues) {
-        clues.forEach(c -> System.out.println(c.toString()));
-        System.out.println("#clues = " + clues.size());
-        clues.forEach(c1 -> clues.forEach(c2 -> {
-            if (c1.anyIntersection(c2) && !c1.equals(c2)) {
-                System.out.println(c1.toString() + " - " + c2.toString());
-            }
-        }));
+    public ArrayList<Rule> getRules() {
+        return new ArrayList<>(rules);
+    }
+
+    /**
+     * Statistics per rule in order of application.
+     *
+     * @return statistics of all rules
+     */
+    public ArrayList<RuleStats> getStats() {
+        return new ArrayList<>(stats);
     }
 
 }
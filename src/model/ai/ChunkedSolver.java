@@ -0,0 +1,295 @@
+package model.ai;
+
+import model.game.ChunkedBoard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Solves a chunked board by applying the trivial and subset rule to its frontier.
+ *
+ * Only frontier squares near recent changes are considered:
+ * the trivial rule is driven by a worklist of such squares
+ * and the subset rule first runs on the region around them.
+ * Only once that is stuck the subset rule runs over the whole frontier,
+ * which is the same point at which a full pass would be stuck.
+ *
+ * Square ids of a chunked board do not fit into clues,
+ * so every subset pass maps the hidden squares it considers to small local ids.
+ */
+public class ChunkedSolver {
+
+    private static final long COMPACT_INTERVAL = 1 << 16;   // revealed squares between compactions
+    private static final int RADIUS = 4;                    // reach of local subset passes around changes
+
+    private final SubsetRule subsetRule;    // provides clue unravelling
+    private volatile boolean cancelled;     // solving was cancelled
+
+    /**
+     * Construct solver.
+     */
+    public ChunkedSolver() {
+        this.subsetRule = new SubsetRule();
+    }
+
+    /**
+     * Deterministically solve a chunked board.
+     * Resolved tiles are compacted as the explored area grows and once more when solving ends.
+     *
+     * @param board to be solved
+     */
+    public void solve(ChunkedBoard board) {
+        // drop changes made before solving, the whole frontier is considered anyway
+        while (board.pollChanged() != -1);
+        HashSet<Long> dirty = new HashSet<>(board.getFrontier());
+        long compacted = board.getRevealed();
+        while (!board.isLost() && !cancelled) {
+            trivial(board, dirty);
+            if (board.isLost())
+                break;
+            if (!dirty.isEmpty()) {
+                // local pass, if it is stuck the next iteration runs a full pass
+                Collection<Long> region = around(board, dirty);
+                dirty.clear();
+                subset(board, region, dirty);
+            } else if (!subset(board, board.getFrontier(), dirty)) {
+                break;
+            }
+
+            if (board.getRevealed() - compacted >= COMPACT_INTERVAL) {
+                board.compact();
+                compacted = board.getRevealed();
+            }
+        }
+        board.compact();
+    }
+
+    /**
+     * Apply the trivial rule until it is stuck.
+     * Starts with the dirty squares and checks squares next to changes again.
+     *
+     * @param board chunked board
+     * @param dirty frontier squares near changes, extended by new changes
+     */
+    private void trivial(ChunkedBoard board, HashSet<Long> dirty) {
+        ArrayDeque<Long> worklist = new ArrayDeque<>(dirty);
+        HashSet<Long> queued = new HashSet<>(dirty);
+        int rows = board.getRows();
+        int cols = board.getCols();
+        ArrayList<Long> hidden = new ArrayList<>(8);
+        while (!worklist.isEmpty() && !board.isLost() && !cancelled) {
+            long square = worklist.poll();
+            queued.remove(square);
+            if (!board.getFrontier().contains(square))
+                continue;
+            int row = board.row(square);
+            int col = board.col(square);
+            int bombs = board.getValue(row, col);
+            hidden.clear();
+            for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++)
+                for (int k = Math.max(0, col - 1); k < Math.min(cols, col + 2); k++)
+                    if (board.isFlagged(r, k))
+                        bombs--;
+                    else if (board.isHiddenUnflagged(r, k))
+                        hidden.add(board.id(r, k));
+            if (bombs == 0)
+                hidden.forEach(board::reveal);
+            else if (bombs == hidden.size())
+                hidden.forEach(board::flag);
+            else
+                continue;
+
+            // frontier squares around changes may now be trivial
+            for (long id: drain(board, dirty))
+                if (queued.add(id))
+                    worklist.add(id);
+            // squares leave the frontier as it moves, keep memory proportional to it
+            if (dirty.size() > 2 * board.getFrontier().size() + 1024)
+                dirty.removeIf(id -> !board.getFrontier().contains(id));
+        }
+        dirty.removeIf(id -> !board.getFrontier().contains(id));
+    }
+
+    /**
+     * Apply the subset rule to part of the frontier and act on the results.
+     *
+     * @param board  chunked board
+     * @param region frontier squares to gather clues from
+     * @param dirty  extended by frontier squares near changes
+     * @return if any square was revealed or flagged
+     */
+    private boolean subset(ChunkedBoard board, Collection<Long> region, HashSet<Long> dirty) {
+        HashMap<Long, Integer> local = new HashMap<>();  // local id per square id
+        ArrayList<Long> global = new ArrayList<>();      // square id per local id
+        ArrayList<Clue> clues = getClues(board, region, local, global);
+        subsetRule.unravel(clues);
+
+        boolean success = false;
+        for (Clue clue: clues) {
+            // saturated clues can be flagged
+            if (clue.isSaturated()) {
+                for (int id: clue.getIds())
+                    board.flag(global.get(id));
+                success = true;
+            // safe clues can be revealed
+            } else if (clue.isSafe()) {
+                for (int id: clue.getIds())
+                    board.reveal(global.get(id));
+                success = true;
+            }
+        }
+        drain(board, dirty);
+        return success;
+    }
+
+    /**
+     * Mark frontier squares around all changes of the board as dirty.
+     *
+     * @param board chunked board
+     * @param dirty extended by frontier squares near changes
+     * @return frontier squares near changes
+     */
+    private ArrayList<Long> drain(ChunkedBoard board, HashSet<Long> dirty) {
+        ArrayList<Long> near = new ArrayList<>();
+        int rows = board.getRows();
+        int cols = board.getCols();
+        long changed;
+        while ((changed = board.pollChanged()) != -1) {
+            int row = board.row(changed);
+            int col = board.col(changed);
+            for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++)
+                for (int k = Math.max(0, col - 1); k < Math.min(cols, col + 2); k++) {
+                    long id = board.id(r, k);
+                    if (board.getFrontier().contains(id)) {
+                        dirty.add(id);
+                        near.add(id);
+                    }
+                }
+        }
+        return near;
+    }
+
+    /**
+     * Gather frontier squares within reach of dirty squares.
+     *
+     * @param board chunked board
+     * @param dirty frontier squares near changes
+     * @return frontier squares around them
+     */
+    private Collection<Long> around(ChunkedBoard board, HashSet<Long> dirty) {
+        HashSet<Long> region = new HashSet<>();
+        int rows = board.getRows();
+        int cols = board.getCols();
+        for (long square: dirty) {
+            int row = board.row(square);
+            int col = board.col(square);
+            for (int r = Math.max(0, row - RADIUS); r < Math.min(rows, row + RADIUS + 1); r++)
+                for (int k = Math.max(0, col - RADIUS); k < Math.min(cols, col + RADIUS + 1); k++) {
+                    long id = board.id(r, k);
+                    if (board.getFrontier().contains(id))
+                        region.add(id);
+                }
+        }
+        return region;
+    }
+
+    /**
+     * Gather information from frontier squares.
+     *
+     * @param board  chunked board
+     * @param region frontier squares to gather clues from
+     * @param local  filled with local id per square id
+     * @param global filled with square id per local id
+     * @return list of gathered clues
+     */
+    private ArrayList<Clue> getClues(ChunkedBoard board, Collection<Long> region,
+                                     HashMap<Long, Integer> local, ArrayList<Long> global) {
+        ArrayList<Clue> clues = new ArrayList<>(region.size());
+        int rows = board.getRows();
+        int cols = board.getCols();
+        for (long square: region) {
+            int row = board.row(square);
+            int col = board.col(square);
+            Clue c = new Clue();
+            int bombs = board.getValue(row, col);
+            // add all hidden unflagged neighbors, count flagged ones
+            for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++)
+                for (int k = Math.max(0, col - 1); k < Math.min(cols, col + 2); k++) {
+                    if (board.isFlagged(r, k)) {
+                        bombs--;
+                    } else if (board.isHiddenUnflagged(r, k)) {
+                        long id = board.id(r, k);
+                        Integer localId = local.get(id);
+                        if (localId == null) {
+                            localId = global.size();
+                            local.put(id, localId);
+                            global.add(id);
+                        }
+                        c.add(localId);
+                    }
+                }
+            // number of unflagged neighboring bombs
+            c.setBombs(bombs);
+            clues.add(c);
+        }
+        return clues;
+    }
+
+    /**
+     * Stop solving as soon as possible.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Number of clue pairs compared since construction.
+     *
+     * @return number of pair checks
+     */
+    public long getPairChecks() {
+        return subsetRule.getPairChecks();
+    }
+
+    /**
+     * Solve a chunked board for a limited time and report the explored area and memory.
+     *
+     * Usage: ChunkedSolver rows cols density seed seconds
+     *
+     * @param args command line arguments
+     * @throws InterruptedException if interrupted while waiting for the solver
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 5) {
+            System.err.println("usage: ChunkedSolver rows cols density seed seconds");
+            System.exit(2);
+        }
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        ChunkedBoard board = new ChunkedBoard(rows, cols, Double.parseDouble(args[2]), Long.parseLong(args[3]),
+                rows / 2, cols / 2);
+        ChunkedSolver solver = new ChunkedSolver();
+        Thread thread = new Thread(() -> solver.solve(board), "chunked-solver");
+        thread.setDaemon(true);
+        long time = System.nanoTime();
+        thread.start();
+        thread.join(Long.parseLong(args[4]) * 1000);
+        boolean finished = !thread.isAlive();
+        solver.cancel();
+        thread.join();
+        double duration = (System.nanoTime() - time) / 1e9;
+        // solved once every square that is not flagged is revealed
+        boolean solved = board.getRevealed() + board.getFlagged() == (long) rows * cols;
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heap = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("%s after %.1f s: %d revealed, %d flagged, %d tiles (%d compacted), %d MB heap%n",
+                board.isLost() ? "lost" : solved ? "solved" : finished ? "stuck" : "stopped", duration,
+                board.getRevealed(), board.getFlagged(), board.getTiles(), board.getCompactedTiles(), heap >> 20);
+    }
+
+}
@@ -15,6 +15,11 @@ public class Clue {
     private final int[] ids;    // list of square ids
     private int bombs;          // number of bombs
 
+    // scheduling state of the subset rule
+    boolean queued;             // clue is waiting in the worklist
+    boolean removed;            // clue was split up entirely
+    int mark;                   // last clue scan that considered this clue
+
     /**
      * Construct an empty clue.
      *
@@ -145,6 +150,16 @@ public class Clue {
         return idsList;
     }
 
+    /**
+     * Get id at a position.
+     *
+     * @param i position from 0 to 7
+     * @return id or -1 if position is empty
+     */
+    int get(int i) {
+        return ids[i];
+    }
+
     public int getBombs() {
         return bombs;
     }
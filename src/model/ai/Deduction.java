@@ -0,0 +1,63 @@
+package model.ai;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+/**
+ * Collects squares which are proven to be safe or bombs.
+ */
+public class Deduction {
+
+    private final TreeSet<Integer> safe;    // ids of squares proven to be safe
+    private final TreeSet<Integer> mines;   // ids of squares proven to be bombs
+
+    /**
+     * Construct empty deduction.
+     */
+    public Deduction() {
+        this.safe = new TreeSet<>();
+        this.mines = new TreeSet<>();
+    }
+
+    /**
+     * Add squares proven to be safe.
+     *
+     * @param ids list of square ids
+     * @return if any square was not known before
+     */
+    public boolean addSafe(ArrayList<Integer> ids) {
+        return safe.addAll(ids);
+    }
+
+    /**
+     * Add squares proven to be bombs.
+     *
+     * @param ids list of square ids
+     * @return if any square was not known before
+     */
+    public boolean addMines(ArrayList<Integer> ids) {
+        return mines.addAll(ids);
+    }
+
+    /**
+     * Count proven squares.
+     *
+     * @return number of safe squares and bombs
+     */
+    public int size() {
+        return safe.size() + mines.size();
+    }
+
+    public boolean isEmpty() {
+        return safe.isEmpty() && mines.isEmpty();
+    }
+
+    public ArrayList<Integer> getSafe() {
+        return new ArrayList<>(safe);
+    }
+
+    public ArrayList<Integer> getMines() {
+        return new ArrayList<>(mines);
+    }
+
+}
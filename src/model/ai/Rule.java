@@ -0,0 +1,28 @@
+package model.ai;
+
+import model.game.Board;
+
+/**
+ * Deduction rule of the agent.
+ *
+ * Rules only report what they can prove,
+ * the agent decides whether to act on it.
+ */
+public interface Rule {
+
+    /**
+     * Add squares proven to be safe or bombs to the deduction.
+     *
+     * @param board     board in its current state, must not be modified
+     * @param deduction collects proven squares
+     */
+    void apply(Board board, Deduction deduction);
+
+    /**
+     * Short name for reporting.
+     *
+     * @return name of the rule
+     */
+    String getName();
+
+}
@@ -0,0 +1,76 @@
+package model.ai;
+
+/**
+ * Measures how often a rule ran, how much it deduced and how long it took.
+ */
+public class RuleStats {
+
+    private final String name;  // name of the rule
+    private long invocations;   // number of times the rule was applied
+    private long deductions;    // number of squares proven by the rule
+    private long nanos;         // time spent in the rule
+
+    /**
+     * Construct empty statistics.
+     *
+     * @param name name of the rule
+     */
+    public RuleStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record a single application of the rule.
+     *
+     * @param deductions number of squares proven
+     * @param nanos      time spent
+     */
+    public void record(int deductions, long nanos) {
+        this.invocations++;
+        this.deductions += deductions;
+        this.nanos += nanos;
+    }
+
+    /**
+     * Merge statistics of the same rule, e.g. from another thread.
+     *
+     * @param other statistics to be merged
+     */
+    public void add(RuleStats other) {
+        invocations += other.invocations;
+        deductions += other.deductions;
+        nanos += other.nanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getInvocations() {
+        return invocations;
+    }
+
+    public long getDeductions() {
+        return deductions;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Compute average cost of a single deduction.
+     *
+     * @return nanoseconds per proven square or infinity if nothing was proven
+     */
+    public double getNanosPerDeduction() {
+        return deductions == 0 ? Double.POSITIVE_INFINITY : (double) nanos / deductions;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + invocations + " runs, " + deductions + " deductions, "
+                + nanos / 1_000_000 + " ms, " + Math.round(getNanosPerDeduction()) + " ns/deduction";
+    }
+
+}
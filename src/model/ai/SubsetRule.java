@@ -0,0 +1,254 @@
+package model.ai;
+
+import model.game.Board;
+import model.game.Square;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Implements the subset rule by combining clues of revealed squares,
+ * see README.
+ */
+public class SubsetRule implements Rule {
+
+    private long pairChecks;    // number of clue pairs compared
+    private Trace trace;        // trace of the current application or null
+
+    @Override
+    public void apply(Board board, Deduction deduction) {
+        trace = Trace.get();
+        ArrayList<Clue> clues = getClues(board.getSquares());
+        unravel(clues);
+        //printClues(clues);
+        trace = null;
+        for (Clue clue: clues)
+            // saturated clues can be flagged
+            if (clue.isSaturated())
+                deduction.addMines(clue.getIds());
+            // safe clues can be revealed
+            else if (clue.isSafe())
+                deduction.addSafe(clue.getIds());
+    }
+
+    @Override
+    public String getName() {
+        return "subset";
+    }
+
+    /**
+     * Gather information from revealed squares with hidden unflagged neighbors.
+     *
+     * @param squares list of all squares
+     * @return list of gathered clues
+     */
+    private ArrayList<Clue> getClues(ArrayList<Square> squares) {
+        ArrayList<Clue> clues = new ArrayList<>();
+        // filter for squares which provide information
+        for (Square s: squares) {
+            if (s.hasInfo()) {
+                Clue c = new Clue();
+                // add all hidden unflagged neighbor ids
+                for (Square n : s.getNeighbors()) {
+                    if (n.isHiddenUnflagged())
+                        c.add(n.getId());
+                }
+                // number of unflagged neighboring bombs
+                c.setBombs(s.getRemainingValue());
+                clues.add(c);
+                if (trace != null)
+                    trace.record(Trace.CLUE, c);
+            }
+        }
+        return clues;
+    }
+
+    /**
+     * Produce new information by combining clues.
+     *
+     * Clues are scheduled with a worklist:
+     * a clue is only compared with other clues when it is new or was split,
+     * so pairs of unchanged clues are never considered twice.
+     * Other clues are found via the squares they share.
+     *
+     * @param clues list of clues, replaced by the unravelled clues
+     */
+    void unravel(ArrayList<Clue> clues) {
+        int minBombs;   // minimum number of bombs that have to be in the intersection
+        int maxBombs;   // maximum number of bombs that can be in the intersection
+
+        HashMap<Integer, ArrayList<Clue>> index = new HashMap<>();  // clues containing a square id
+        ArrayDeque<Clue> worklist = new ArrayDeque<>(clues);        // clues to be compared
+        for (Clue c: clues) {
+            c.queued = true;
+            c.removed = false;
+            index(index, c, c);
+        }
+        int scan = 0;   // number of current clue scan
+
+        /*
+         * take clues from the worklist while also updating them
+         * when the worklist is empty no new information can be produced
+         */
+        while (!worklist.isEmpty()) {
+            Clue x = worklist.poll();
+            x.queued = false;
+            if (x.removed)
+                continue;
+            scan++;
+            /*
+             * check clues that share a square with the current clue
+             */
+            next:
+            for (int i = 0; i < 8; i++) {
+                int id = x.get(i);
+                if (id == -1)
+                    continue;
+                for (Clue y: index.get(id)) {
+                    // skip x itself and clues already checked via another square
+                    if (y == x || y.mark == scan)
+                        continue;
+                    y.mark = scan;
+                    pairChecks++;
+                    Clue z = x.intersect(y);
+
+                    /*
+                     * minimum number of bombs that have to be in the intersection
+                     * = max (number of bombs - (size of clue - size of intersection))
+                     */
+                    minBombs = Math.max(x.getBombs() - x.size() + z.size(), y.getBombs() - y.size() + z.size());
+                    /*
+                     * maximum number of bombs that can be in the intersection
+                     * = min (number of bombs)
+                     */
+                    maxBombs = Math.min(x.getBombs(), y.getBombs());
+
+                    /*
+                     * if min and max bombs are equal
+                     * new information can be produced
+                     */
+                    if (maxBombs == minBombs) {
+                        /*
+                         * remove the intersection from x and y
+                         * and reduce their number of bombs accordingly
+                         * clues that are now empty are redundant and removed
+                         * clues that changed need to be considered again
+                         */
+                        if (trace != null) {
+                            trace.record(Trace.PAIR, x);
+                            trace.record(Trace.PAIR, y);
+                        }
+                        split(x, z, maxBombs, index, worklist);
+                        split(y, z, maxBombs, index, worklist);
+                        /*
+                         * append new information
+                         */
+                        z.setBombs(maxBombs);
+                        if (trace != null)
+                            trace.record(Trace.INTERSECT, z);
+                        z.removed = false;
+                        clues.add(z);
+                        index(index, z, z);
+                        enqueue(z, worklist);
+                        break next;
+                    }
+                }
+            }
+        }
+
+        // drop clues that were split up entirely
+        clues.removeIf(c -> c.removed);
+    }
+
+    /**
+     * Remove an intersection from a clue.
+     *
+     * @param c        clue to be split
+     * @param z        intersection with another clue
+     * @param bombs    number of bombs in the intersection
+     * @param index    clues containing a square id
+     * @param worklist clues to be compared
+     */
+    private void split(Clue c, Clue z, int bombs, HashMap<Integer, ArrayList<Clue>> index, ArrayDeque<Clue> worklist) {
+        unindex(index, z, c);
+        c.removeAll(z);
+        if (c.isNotEmpty()) {
+            c.setBombs(c.getBombs() - bombs);
+            enqueue(c, worklist);
+        } else {
+            c.removed = true;
+        }
+        if (trace != null)
+            trace.record(Trace.SPLIT, c);
+    }
+
+    /**
+     * Add a clue to the worklist unless it is already waiting.
+     *
+     * @param c        clue
+     * @param worklist clues to be compared
+     */
+    private void enqueue(Clue c, ArrayDeque<Clue> worklist) {
+        if (!c.queued) {
+            c.queued = true;
+            worklist.add(c);
+        }
+    }
+
+    /**
+     * Register a clue under the given square ids.
+     *
+     * @param index clues containing a square id
+     * @param ids   clue holding the square ids
+     * @param c     clue to be registered
+     */
+    private void index(HashMap<Integer, ArrayList<Clue>> index, Clue ids, Clue c) {
+        for (int i = 0; i < 8; i++)
+            if (ids.get(i) != -1)
+                index.computeIfAbsent(ids.get(i), id -> new ArrayList<>(4)).add(c);
+    }
+
+    /**
+     * Unregister a clue under the given square ids.
+     * Removes by identity since equal clues may exist.
+     *
+     * @param index clues containing a square id
+     * @param ids   clue holding the square ids
+     * @param c     clue to be unregistered
+     */
+    private void unindex(HashMap<Integer, ArrayList<Clue>> index, Clue ids, Clue c) {
+        for (int i = 0; i < 8; i++) {
+            if (ids.get(i) == -1)
+                continue;
+            ArrayList<Clue> list = index.get(ids.get(i));
+            // swap remove, order does not matter
+            for (int k = 0; k < list.size(); k++)
+                if (list.get(k) == c) {
+                    list.set(k, list.get(list.size() - 1));
+                    list.remove(list.size() - 1);
+                    break;
+                }
+        }
+    }
+
+    /**
+     * Number of clue pairs compared since construction.
+     *
+     * @return number of pair checks
+     */
+    public long getPairChecks() {
+        return pairChecks;
+    }
+
+    public void printClues(ArrayList<Clue> clues) {
+        clues.forEach(c -> System.out.println(c.toString()));
+        System.out.println("#clues = " + clues.size());
+        clues.forEach(c1 -> clues.forEach(c2 -> {
+            if (c1.anyIntersection(c2) && !c1.equals(c2)) {
+                System.out.println(c1.toString() + " - " + c2.toString());
+            }
+        }));
+    }
+
+}
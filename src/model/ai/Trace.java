@@ -0,0 +1,184 @@
+package model.ai;
+
+/**
+ * Records solver events of the current thread into a ring buffer of packed longs.
+ *
+ * Tracing is off unless the current thread started a trace,
+ * so tracing one simulation never slows down other threads.
+ * The buffer has a fixed capacity and is overwritten from the start for every game,
+ * so only the most recent events of a game are kept.
+ *
+ * Event layout from the highest bit:
+ * type (4 bits), then either a clue as number of bombs (4 bits),
+ * occupied squares of a 3x3 window (9 bits) and id of the window's top left square (47 bits),
+ * or two values of 28 and 32 bits.
+ */
+public final class Trace {
+
+    public static final int CLUE = 1;       // clue gathered from a revealed square
+    public static final int PAIR = 2;       // clue before it was split by an intersection
+    public static final int SPLIT = 3;      // clue after it was split, empty if removed
+    public static final int INTERSECT = 4;  // clue unravelled from the intersection of the last pair
+    public static final int RULE = 5;       // rule index and number of proven squares
+    public static final int FLAG = 6;       // square id flagged by the agent
+    public static final int REVEAL = 7;     // square id revealed by the agent
+
+    private static final String[] NAMES = {"?", "clue", "pair", "split", "intersect", "rule", "flag", "reveal"};
+
+    private static final ThreadLocal<Trace> TRACES = new ThreadLocal<>();   // trace per thread, null if off
+
+    private final long[] events;    // ring buffer of events
+    private final int mask;         // capacity - 1
+    private long count;             // number of events recorded in the current game
+    private int cols;               // number of columns of the current board
+
+    /**
+     * Construct empty trace.
+     *
+     * @param capacity number of events kept, power of two
+     */
+    private Trace(int capacity) {
+        this.events = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Turn tracing on for the current thread.
+     *
+     * @param capacity number of events kept, rounded up to a power of two
+     * @return trace of the current thread
+     */
+    public static Trace start(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity has to be between 1 and 2^30");
+        Trace trace = new Trace(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+        TRACES.set(trace);
+        return trace;
+    }
+
+    /**
+     * Turn tracing off for the current thread.
+     */
+    public static void stop() {
+        TRACES.remove();
+    }
+
+    /**
+     * Trace of the current thread.
+     *
+     * @return trace or null if tracing is off
+     */
+    public static Trace get() {
+        return TRACES.get();
+    }
+
+    /**
+     * Start recording a new game.
+     *
+     * @param cols number of columns of the board
+     */
+    public void begin(int cols) {
+        this.count = 0;
+        this.cols = cols;
+    }
+
+    /**
+     * Record an event with two values.
+     *
+     * @param type event type
+     * @param a    value of up to 28 bits
+     * @param b    value of up to 32 bits
+     */
+    public void record(int type, int a, int b) {
+        events[(int) count++ & mask] = (long) type << 60 | (long) (a & 0xFFFFFFF) << 32 | (b & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Record an event concerning a clue.
+     * Squares of a clue always fit into the 3x3 window around the square it was gathered from.
+     *
+     * @param type event type
+     * @param c    clue
+     */
+    void record(int type, Clue c) {
+        int top = Integer.MAX_VALUE;
+        int left = Integer.MAX_VALUE;
+        for (int i = 0; i < 8; i++)
+            if (c.get(i) != -1) {
+                top = Math.min(top, c.get(i) / cols);
+                left = Math.min(left, c.get(i) % cols);
+            }
+        int window = 0;
+        long anchor = 0;
+        if (top != Integer.MAX_VALUE) {
+            for (int i = 0; i < 8; i++)
+                if (c.get(i) != -1)
+                    window |= 1 << (c.get(i) / cols - top) * 3 + c.get(i) % cols - left;
+            anchor = (long) top * cols + left;
+        }
+        events[(int) count++ & mask] = (long) type << 60 | (long) (c.getBombs() & 0xF) << 56 | (long) window << 47 | anchor;
+    }
+
+    /**
+     * Number of events recorded in the current game, including overwritten ones.
+     *
+     * @return number of events
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Events kept of the current game, oldest first.
+     *
+     * @return packed events
+     */
+    public long[] getEvents() {
+        int kept = (int) Math.min(count, events.length);
+        long[] copy = new long[kept];
+        for (int i = 0; i < kept; i++)
+            copy[i] = events[(int) (count - kept + i) & mask];
+        return copy;
+    }
+
+    public static int getType(long event) {
+        return (int) (event >>> 60);
+    }
+
+    public static int getA(long event) {
+        return (int) (event >>> 32) & 0xFFFFFFF;
+    }
+
+    public static int getB(long event) {
+        return (int) event;
+    }
+
+    /**
+     * Describe a packed event.
+     *
+     * @param event packed event
+     * @param cols  number of columns of the traced board
+     * @return human readable event
+     */
+    public static String describe(long event, int cols) {
+        int type = getType(event);
+        String name = type < NAMES.length ? NAMES[type] : NAMES[0];
+        if (type == RULE)
+            return name + " " + getA(event) + " proved " + getB(event);
+        if (type == FLAG || type == REVEAL)
+            return name + " " + getB(event);
+        if (type < CLUE || type > INTERSECT)
+            return name + " " + Long.toHexString(event);
+        // expand the 3x3 window back into square ids
+        int window = (int) (event >>> 47) & 0x1FF;
+        long anchor = event & 0x7FFFFFFFFFFFL;
+        StringBuilder sb = new StringBuilder(name).append(" ([");
+        for (int k = 0; k < 9; k++)
+            if ((window & 1 << k) != 0)
+                sb.append(anchor + (long) (k / 3) * cols + k % 3).append(" ");
+        if (window != 0)
+            sb.deleteCharAt(sb.length() - 1);
+        return sb.append("], ").append(event >>> 56 & 0xF).append(")").toString();
+    }
+
+}
@@ -0,0 +1,42 @@
+package model.ai;
+
+import model.game.Board;
+import model.game.Square;
+
+import java.util.ArrayList;
+
+/**
+ * Considers every revealed square on its own.
+ *
+ * If all bombs around a square are flagged its hidden unflagged neighbors are safe.
+ * If it has as many hidden unflagged neighbors as unflagged bombs they are all bombs.
+ */
+public class TrivialRule implements Rule {
+
+    @Override
+    public void apply(Board board, Deduction deduction) {
+        for (Square s: board.getSquares()) {
+            if (!s.hasInfo())
+                continue;
+            boolean safe = s.getRemainingValue() == 0;
+            boolean saturated = s.getRemainingValue() == s.getRemainingInfo();
+            if (!safe && !saturated)
+                continue;
+            // gather hidden unflagged neighbors
+            ArrayList<Integer> ids = new ArrayList<>(s.getRemainingInfo());
+            for (Square n: s.getNeighbors())
+                if (n.isHiddenUnflagged())
+                    ids.add(n.getId());
+            if (safe)
+                deduction.addSafe(ids);
+            else
+                deduction.addMines(ids);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "trivial";
+    }
+
+}
@@ -1,7 +1,10 @@
 package model.game;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
 
@@ -11,12 +14,24 @@ import java.util.Random;
  */
 public class Board {
 
+    public static final int UNKNOWN = -2;   // value of a hidden square as seen by a player
+    private static final int MAX_FILE_SQUARES = 1 << 22;    // largest board read from a file
+    // longest line of such a file, ids have at most 7 digits and a separator
+    private static final int MAX_FILE_LINE = 8 * (MAX_FILE_SQUARES + 4);
+
     private int rows;                   // number of rows
     private int cols;                   // number of columns
     private int bombs;                  // number of bombs
     private int size;                   // number of squares
     private ArrayList<Square> squares;  // list of squares in board
 
+    // opening of the last start square, the same for every game
+    private int openingStart = -1;      // start square of the cached opening
+    private int[] openingIds;           // squares within two rows and columns of the start, safe ones first
+    private int[] openingInfo;          // hidden unflagged neighbors of these squares once the safe ones are revealed
+    private int openingSafe;            // number of safe squares around and including the start
+    private int[][] openingFrontier;    // neighbors of each safe square outside the safe squares
+
     /**
      * Construct empty board.
      *
@@ -49,13 +64,97 @@ public class Board {
     public Board(String filepath) {
         try {
             BufferedReader br = new BufferedReader(new FileReader(filepath));
-
-            String[] line = br.readLine().split(",");
+            String line = br.readLine();
             br.close();
-            this.rows = Integer.parseInt(line[0]);
-            this.cols = Integer.parseInt(line[1]);
+            init(line);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Construct uninitialized board for parsing.
+     */
+    private Board() {
+    }
+
+    /**
+     * Read board from file.
+     * Unlike the file constructor this reports unreadable or malformed files.
+     *
+     * @param path file in the format of the file constructor
+     * @return board with the start square revealed
+     * @throws IOException if the file can not be read or is malformed
+     */
+    public static Board read(Path path) throws IOException {
+        return parse(readLine(path));
+    }
+
+    /**
+     * Read the first line of a board file.
+     * Stops after MAX_FILE_LINE characters, so oversized files are not buffered whole.
+     *
+     * @param path board file
+     * @return first line without terminator or null if the file is empty
+     * @throws IOException if the file can not be read or the line is too long for any valid board
+     */
+    public static String readLine(Path path) throws IOException {
+        try (BufferedReader br = Files.newBufferedReader(path)) {
+            StringBuilder line = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = br.read(buffer)) != -1) {
+                int end = 0;
+                while (end < read && buffer[end] != '\n' && buffer[end] != '\r')
+                    end++;
+                if (line.length() + end > MAX_FILE_LINE)
+                    throw new IOException("first line is longer than " + MAX_FILE_LINE + " characters");
+                line.append(buffer, 0, end);
+                if (end < read)
+                    return line.toString();
+            }
+            return line.length() == 0 ? null : line.toString();
+        }
+    }
+
+    /**
+     * Parse board from the contents of a file.
+     *
+     * @param line rows,cols,bombs,start,bomb1,bomb2, etc.
+     * @return board with the start square revealed
+     * @throws IOException if the line is malformed
+     */
+    public static Board parse(String line) throws IOException {
+        Board board = new Board();
+        board.init(line);
+        return board;
+    }
+
+    /**
+     * Initialize squares, distribute bombs and reveal start square
+     * as described by the contents of a file.
+     *
+     * @param content rows,cols,bombs,start,bomb1,bomb2, etc.
+     * @throws IOException if the content is malformed
+     */
+    private void init(String content) throws IOException {
+        if (content == null || content.isBlank())
+            throw new IOException("empty board file");
+        String[] line = content.trim().split(",");
+        if (line.length < 4)
+            throw new IOException("expected rows,cols,bombs,start but found " + line.length + " fields");
+        try {
+            this.rows = Integer.parseInt(line[0].trim());
+            this.cols = Integer.parseInt(line[1].trim());
+            this.bombs = Integer.parseInt(line[2].trim());
+            if (rows < 1 || cols < 1 || (long) rows * cols > MAX_FILE_SQUARES)
+                throw new IOException("invalid dimensions " + rows + "x" + cols
+                        + ", boards have to have between 1 and " + MAX_FILE_SQUARES + " squares");
+            if (bombs < 0 || bombs >= rows * cols)
+                throw new IOException("invalid number of bombs " + bombs + " for " + rows * cols + " squares");
+            if (line.length - 4 != bombs)
+                throw new IOException("expected " + bombs + " bombs but found " + (line.length - 4));
             this.size = rows * cols;
-            this.bombs = Integer.parseInt(line[2]);
 
             //initialize squares
             this.squares =  new ArrayList<>(size);
@@ -65,17 +164,81 @@ public class Board {
                 s.setNeighbors(getNeighbors(s));
 
             // distribute bombs
-            for (int i = 4; i < line.length; i++)
-                squares.get(Integer.parseInt(line[i])).setBomb();
+            for (int i = 4; i < line.length; i++) {
+                Square bomb = squares.get(checkId(Integer.parseInt(line[i].trim())));
+                if (bomb.getValue() == -1)
+                    throw new IOException("duplicate bomb " + bomb.getId());
+                bomb.setBomb();
+            }
 
             // reveal start square
-            squares.get(Integer.parseInt(line[3])).reveal();
+            Square start = squares.get(checkId(Integer.parseInt(line[3].trim())));
+            if (start.getValue() == -1)
+                throw new IOException("start square " + start.getId() + " is a bomb");
+            start.reveal();
 
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (NumberFormatException e) {
+            throw new IOException("not a number: " + e.getMessage());
         }
     }
 
+    /**
+     * Check if a parsed square id lies on the board.
+     *
+     * @param id of square
+     * @return id
+     * @throws IOException if the id is out of bounds
+     */
+    private int checkId(int id) throws IOException {
+        if (id < 0 || id >= size)
+            throw new IOException("square " + id + " is not on the board");
+        return id;
+    }
+
+    /**
+     * Construct board from what a player sees.
+     * Values of hidden squares are unknown,
+     * so the board can be flagged but hidden squares must not be revealed.
+     *
+     * @param rows    number of rows
+     * @param cols    number of columns
+     * @param values  value of every revealed square or UNKNOWN if hidden
+     * @param flagged which squares are flagged
+     * @return observed board
+     */
+    public static Board observe(int rows, int cols, int[] values, boolean[] flagged) {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("invalid dimensions " + rows + "x" + cols);
+        if (values.length != rows * cols || flagged.length != rows * cols)
+            throw new IllegalArgumentException("expected " + rows * cols + " squares");
+        Board board = new Board(rows, cols, 0);
+        for (Square s: board.squares) {
+            int id = s.getId();
+            boolean hidden = values[id] == UNKNOWN;
+            if (flagged[id] && !hidden)
+                throw new IllegalArgumentException("square " + id + " is revealed and flagged");
+            if (!hidden && (values[id] < 0 || values[id] > s.getNeighbors().size()))
+                throw new IllegalArgumentException("square " + id + " has invalid value " + values[id]);
+            // count flagged and hidden unflagged neighbors
+            int flags = 0;
+            int info = 0;
+            for (Square n: s.getNeighbors()) {
+                if (flagged[n.getId()])
+                    flags++;
+                else if (values[n.getId()] == UNKNOWN)
+                    info++;
+            }
+            if (!hidden && (values[id] - flags < 0 || values[id] - flags > info))
+                throw new IllegalArgumentException("square " + id + " with value " + values[id] + " contradicts "
+                        + flags + " flagged and " + info + " hidden neighbors");
+            if (hidden)
+                s.setState(0, 0, info, true, flagged[id]);
+            else
+                s.setState(values[id], values[id] - flags, info, false, false);
+        }
+        return board;
+    }
+
     /**
      * Randomly generate new values for every square.
      *
@@ -84,7 +247,7 @@ public class Board {
     public void generate(int start) {
         squares.forEach(Square::reset);
         distributeBombs(start);
-        squares.get(start).reveal();
+        open(start);
     }
 
     /**
@@ -96,7 +259,166 @@ public class Board {
     public void generate(int start, Random random) {
         squares.forEach(Square::reset);
         distributeBombs(start, random);
-        squares.get(start).reveal();
+        open(start);
+    }
+
+    /**
+     * Randomly generate new values for every square.
+     * Produces the same board as generate(start, random) for the same random state,
+     * but places bombs in a bitset and computes all values with word-parallel adds
+     * instead of updating eight neighbors per bomb.
+     *
+     * @param start  id of first square to be revealed
+     * @param random enables seeded random generation
+     */
+    public void generatePacked(int start, Random random) {
+        int words = (cols + 63) >>> 6;      // words per row
+        long[] mines = new long[rows * words];
+
+        // determine viable squares in the same order as distributeBombs
+        int startRow = start / cols;
+        int startCol = start % cols;
+        int[] potentialBombs = new int[size];
+        int n = 0;
+        for (int id = 0; id < size; id++)
+            if (Math.abs(id / cols - startRow) > 1 || Math.abs(id % cols - startCol) > 1)
+                potentialBombs[n++] = id;
+
+        // shuffle exactly like Collections.shuffle
+        for (int i = n; i > 1; i--) {
+            int j = random.nextInt(i);
+            int swap = potentialBombs[i - 1];
+            potentialBombs[i - 1] = potentialBombs[j];
+            potentialBombs[j] = swap;
+        }
+        for (int b = 0; b < bombs; b++) {
+            int id = potentialBombs[b];
+            mines[id / cols * words + (id % cols >>> 6)] |= 1L << (id % cols);
+        }
+
+        // count neighboring bombs of 64 squares at once
+        // bit i of plane k holds bit k of the count of square i
+        long[] planes = new long[4];
+        for (int r = 0; r < rows; r++) {
+            for (int w = 0; w < words; w++) {
+                planes[0] = planes[1] = planes[2] = planes[3] = 0;
+                for (int dr = -1; dr <= 1; dr++) {
+                    int row = r + dr;
+                    if (row < 0 || row >= rows)
+                        continue;
+                    int base = row * words;
+                    long center = mines[base + w];
+                    long before = w > 0 ? mines[base + w - 1] : 0;
+                    long after = w < words - 1 ? mines[base + w + 1] : 0;
+                    // bombs to the left and right of every square
+                    add(planes, center << 1 | before >>> 63);
+                    add(planes, center >>> 1 | after << 63);
+                    if (dr != 0)
+                        add(planes, center);
+                }
+                long own = mines[r * words + w];
+                for (int bit = 0; bit < 64; bit++) {
+                    int col = (w << 6) + bit;
+                    if (col >= cols)
+                        break;
+                    Square s = squares.get(r * cols + col);
+                    int info = s.getNeighbors().size();
+                    if ((own >>> bit & 1) != 0) {
+                        s.setState(-1, 0, info, true, false);
+                    } else {
+                        int value = (int) (planes[0] >>> bit & 1)
+                                | (int) (planes[1] >>> bit & 1) << 1
+                                | (int) (planes[2] >>> bit & 1) << 2
+                                | (int) (planes[3] >>> bit & 1) << 3;
+                        s.setState(value, value, info, true, false);
+                    }
+                }
+            }
+        }
+        open(start);
+    }
+
+    /**
+     * Reveal the start square of a freshly generated board.
+     *
+     * The start and its neighbors are never bombs, so the start always has value 0
+     * and revealing it always reveals the same safe squares.
+     * Their reveal and its effect on the hidden unflagged neighbors of nearby squares
+     * is precomputed once per start square,
+     * only the flood fill beyond them depends on the bombs.
+     * Leaves the board in the same state as revealing the start square.
+     *
+     * @param start id of first square to be revealed
+     */
+    private void open(int start) {
+        if (openingStart != start)
+            prepareOpening(start);
+        for (int k = 0; k < openingIds.length; k++) {
+            Square s = squares.get(openingIds[k]);
+            s.setState(s.getValue(), s.getRemainingValue(), openingInfo[k], k >= openingSafe, false);
+        }
+        // continue the flood fill from safe squares without neighboring bombs
+        for (int k = 0; k < openingSafe; k++)
+            if (squares.get(openingIds[k]).getValue() == 0)
+                for (int id: openingFrontier[k])
+                    squares.get(id).reveal();
+    }
+
+    /**
+     * Precompute the opening of a start square.
+     *
+     * @param start id of first square to be revealed
+     */
+    private void prepareOpening(int start) {
+        ArrayList<Square> safe = getNeighbors(start);
+        safe.add(0, squares.get(start));
+
+        // safe squares first, then their hidden neighbors
+        ArrayList<Square> affected = new ArrayList<>(safe);
+        for (Square s: safe)
+            for (Square n: s.getNeighbors())
+                if (!affected.contains(n))
+                    affected.add(n);
+
+        openingIds = new int[affected.size()];
+        openingInfo = new int[affected.size()];
+        for (int k = 0; k < openingIds.length; k++) {
+            Square s = affected.get(k);
+            openingIds[k] = s.getId();
+            openingInfo[k] = s.getNeighbors().size();
+            // every revealed neighbor reduces the hidden unflagged neighbors by one
+            for (Square n: s.getNeighbors())
+                if (safe.contains(n))
+                    openingInfo[k]--;
+        }
+
+        openingSafe = safe.size();
+        openingFrontier = new int[openingSafe][];
+        for (int k = 0; k < openingSafe; k++) {
+            ArrayList<Square> neighbors = safe.get(k).getNeighbors();
+            int[] frontier = new int[neighbors.size()];
+            int n = 0;
+            for (Square neighbor: neighbors)
+                if (!safe.contains(neighbor))
+                    frontier[n++] = neighbor.getId();
+            openingFrontier[k] = Arrays.copyOf(frontier, n);
+        }
+        openingStart = start;
+    }
+
+    /**
+     * Add a bit vector to a bit-sliced counter.
+     *
+     * @param planes counter, plane k holds bit k of every count
+     * @param bits   one bit per square to be added
+     */
+    private static void add(long[] planes, long bits) {
+        // ripple carry through the planes
+        for (int k = 0; k < planes.length && bits != 0; k++) {
+            long carry = planes[k] & bits;
+            planes[k] ^= bits;
+            bits = carry;
+        }
     }
 
     /**
@@ -174,6 +496,31 @@ public class Board {
         return neighbors;
     }
 
+    /**
+     * Copy the state of every square.
+     *
+     * @return snapshot which can be restored into any board of the same dimensions
+     */
+    public Snapshot snapshot() {
+        int[] state = new int[size];
+        for (int i = 0; i < size; i++)
+            state[i] = Snapshot.pack(squares.get(i));
+        return new Snapshot(rows, cols, state);
+    }
+
+    /**
+     * Overwrite the state of every square with a snapshot.
+     *
+     * @param snapshot snapshot of a board with the same dimensions
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.getRows() != rows || snapshot.getCols() != cols)
+            throw new IllegalArgumentException("snapshot of a " + snapshot.getRows() + "x" + snapshot.getCols()
+                    + " board can not be restored into a " + rows + "x" + cols + " board");
+        for (int i = 0; i < size; i++)
+            Snapshot.unpack(squares.get(i), snapshot.get(i));
+    }
+
     /**
      * Check if all non-bomb squares are revealed.
      *
@@ -186,6 +533,32 @@ public class Board {
         return true;
     }
 
+    /**
+     * Count revealed squares.
+     *
+     * @return number of revealed squares
+     */
+    public int countRevealed() {
+        int revealed = 0;
+        for (Square s: squares)
+            if (!s.isHidden())
+                revealed++;
+        return revealed;
+    }
+
+    /**
+     * Count flagged squares.
+     *
+     * @return number of flagged squares
+     */
+    public int countFlagged() {
+        int flagged = 0;
+        for (Square s: squares)
+            if (s.isFlagged())
+                flagged++;
+        return flagged;
+    }
+
     /**
      * Reveal all squares.
      *
@@ -210,6 +583,18 @@ public class Board {
         return squares;
     }
 
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getBombs() {
+        return bombs;
+    }
+
     public void printV() {
         StringBuilder output = new StringBuilder();
         for(int i = 0; i < size; i++) {
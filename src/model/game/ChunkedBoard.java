@@ -0,0 +1,462 @@
+package model.game;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Represents a gigantic Minesweeper board split into tiles of 64x64 squares.
+ *
+ * Tiles are only materialized when a square in or next to them is touched.
+ * Bombs of a tile are derived from (seed, tile coordinates) with a fixed density,
+ * so a tile can be dropped and regenerated at any time.
+ * Memory is proportional to the explored area instead of the board area.
+ *
+ * Squares are addressed by id = row * cols + col as long.
+ */
+public class ChunkedBoard {
+
+    private static final int TILE_BITS = 6;                 // log2 of tile width
+    private static final int TILE = 1 << TILE_BITS;         // tile width and height
+    private static final int MASK = TILE - 1;               // position within tile
+
+    private static final byte REVEALED = (byte) 0x80;       // state bit of revealed squares
+    private static final byte FLAGGED = 0x40;               // state bit of flagged squares
+    private static final byte VALUE = 0x0F;                 // state bits holding the value of revealed squares
+
+    /**
+     * Square of tiles within the board.
+     */
+    private static class Tile {
+
+        long[] mines;       // bomb bits, one word per row or null if compacted
+        byte[] state;       // state per square or null if untouched or compacted
+        int unresolved;     // number of hidden unflagged squares
+        boolean compacted;  // every square is resolved and the state array was dropped
+
+    }
+
+    private final int rows;                     // number of rows
+    private final int cols;                     // number of columns
+    private final double density;               // probability of a square being a bomb
+    private final long seed;                    // seed of the bomb layout
+    private final int startRow;                 // row of the start square
+    private final int startCol;                 // column of the start square
+    private final int tileCols;                 // number of tile columns
+    private final HashMap<Long, Tile> tiles;    // materialized tiles by tileRow * tileCols + tileCol
+    private long lastKey;                       // key of most recently accessed tile
+    private Tile lastTile;                      // most recently accessed tile or null
+    private final HashSet<Long> frontier;       // revealed squares with hidden unflagged neighbors
+    private final ArrayDeque<Long> changed;     // squares revealed or flagged since last poll
+    private long revealed;                      // number of revealed squares
+    private long flagged;                       // number of flagged squares
+    private boolean lost;                       // a bomb was revealed
+
+    /**
+     * Construct board and reveal the start square.
+     * Start square and its neighbors can not be bombs.
+     *
+     * @param rows     number of rows
+     * @param cols     number of columns
+     * @param density  probability of a square being a bomb
+     * @param seed     seed of the bomb layout
+     * @param startRow row of first square to be revealed
+     * @param startCol column of first square to be revealed
+     */
+    public ChunkedBoard(int rows, int cols, double density, long seed, int startRow, int startCol) {
+        if (rows < 1 || cols < 1)
+            throw new IllegalArgumentException("invalid dimensions " + rows + "x" + cols);
+        if (density < 0 || density >= 1)
+            throw new IllegalArgumentException("density has to be in [0, 1)");
+        if (!contains(startRow, startCol, rows, cols))
+            throw new IllegalArgumentException("start square is not on the board");
+        this.rows = rows;
+        this.cols = cols;
+        this.density = density;
+        this.seed = seed;
+        this.startRow = startRow;
+        this.startCol = startCol;
+        this.tileCols = (cols + MASK) >> TILE_BITS;
+        this.tiles = new HashMap<>();
+        this.frontier = new HashSet<>();
+        this.changed = new ArrayDeque<>();
+        reveal(id(startRow, startCol));
+    }
+
+    /**
+     * Reveal a square and, if it has value 0, its neighbors.
+     *
+     * @param id of square
+     */
+    public void reveal(long id) {
+        // flood fill without recursion since openings may span millions of squares
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        queue.add(id);
+        while (!queue.isEmpty()) {
+            long square = queue.poll();
+            int row = row(square);
+            int col = col(square);
+            Tile tile = tile(row, col);
+            byte state = state(tile, row, col);
+            // can only reveal if hidden unflagged
+            if ((state & (REVEALED | FLAGGED)) != 0)
+                continue;
+            if (isBomb(row, col)) {
+                lost = true;
+                setState(tile, row, col, REVEALED);
+                continue;
+            }
+            int value = countBombs(row, col);
+            setState(tile, row, col, (byte) (REVEALED | value));
+            revealed++;
+            changed.add(square);
+            updateFrontier(row, col);
+            // recursively reveal neighbors of squares with value 0
+            if (value == 0)
+                for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++)
+                    for (int c = Math.max(0, col - 1); c < Math.min(cols, col + 2); c++)
+                        if ((r != row || c != col) && isHiddenUnflagged(r, c))
+                            queue.add(id(r, c));
+        }
+    }
+
+    /**
+     * Flag a square.
+     *
+     * @param id of square
+     */
+    public void flag(long id) {
+        int row = row(id);
+        int col = col(id);
+        Tile tile = tile(row, col);
+        // can only flag if hidden unflagged
+        if ((state(tile, row, col) & (REVEALED | FLAGGED)) == 0) {
+            setState(tile, row, col, FLAGGED);
+            flagged++;
+            changed.add(id);
+            updateFrontier(row, col);
+        }
+    }
+
+    /**
+     * Update frontier after a square was revealed or flagged.
+     *
+     * @param row row of square
+     * @param col column of square
+     */
+    private void updateFrontier(int row, int col) {
+        if (isRevealed(row, col) && hasHiddenUnflaggedNeighbor(row, col))
+            frontier.add(id(row, col));
+        // neighbors may have lost their last hidden unflagged neighbor
+        for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++)
+            for (int c = Math.max(0, col - 1); c < Math.min(cols, col + 2); c++)
+                if ((r != row || c != col) && frontier.contains(id(r, c)) && !hasHiddenUnflaggedNeighbor(r, c))
+                    frontier.remove(id(r, c));
+    }
+
+    /**
+     * Check if any neighbor is hidden unflagged.
+     *
+     * @param row row of square
+     * @param col column of square
+     * @return if square provides information
+     */
+    private boolean hasHiddenUnflaggedNeighbor(int row, int col) {
+        for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++)
+            for (int c = Math.max(0, col - 1); c < Math.min(cols, col + 2); c++)
+                if ((r != row || c != col) && isHiddenUnflagged(r, c))
+                    return true;
+        return false;
+    }
+
+    /**
+     * Count bombs around a square.
+     *
+     * @param row row of square
+     * @param col column of square
+     * @return number of neighboring bombs
+     */
+    private int countBombs(int row, int col) {
+        int bombs = 0;
+        for (int r = Math.max(0, row - 1); r < Math.min(rows, row + 2); r++)
+            for (int c = Math.max(0, col - 1); c < Math.min(cols, col + 2); c++)
+                if ((r != row || c != col) && isBomb(r, c))
+                    bombs++;
+        return bombs;
+    }
+
+    /**
+     * Check if a square is a bomb.
+     *
+     * @param row row of square
+     * @param col column of square
+     * @return if square is bomb
+     */
+    private boolean isBomb(int row, int col) {
+        Tile tile = tile(row, col);
+        // compacted tiles regain their bombs when touched again
+        if (tile.mines == null)
+            tile.mines = layout(row >> TILE_BITS, col >> TILE_BITS);
+        return (tile.mines[row & MASK] >>> (col & MASK) & 1) != 0;
+    }
+
+    /**
+     * Get tile containing a square, materializing it if necessary.
+     *
+     * @param row row of square
+     * @param col column of square
+     * @return tile
+     */
+    private Tile tile(int row, int col) {
+        int tileRow = row >> TILE_BITS;
+        int tileCol = col >> TILE_BITS;
+        long key = (long) tileRow * tileCols + tileCol;
+        // neighboring squares are usually in the same tile
+        if (lastTile != null && key == lastKey)
+            return lastTile;
+        Tile tile = tiles.get(key);
+        if (tile == null) {
+            tile = new Tile();
+            tile.mines = layout(tileRow, tileCol);
+            tile.unresolved = (Math.min(rows, (tileRow + 1) << TILE_BITS) - (tileRow << TILE_BITS))
+                    * (Math.min(cols, (tileCol + 1) << TILE_BITS) - (tileCol << TILE_BITS));
+            tiles.put(key, tile);
+        }
+        lastKey = key;
+        lastTile = tile;
+        return tile;
+    }
+
+    /**
+     * Derive bombs of a tile from seed and tile coordinates.
+     *
+     * @param tileRow row of tile
+     * @param tileCol column of tile
+     * @return bomb bits, one word per row
+     */
+    private long[] layout(int tileRow, int tileCol) {
+        long z = seed * 0x9E3779B97F4A7C15L + ((long) tileRow << 32 | tileCol);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        Random random = new Random(z ^ (z >>> 31));
+
+        long[] mines = new long[TILE];
+        for (int r = 0; r < TILE; r++) {
+            int row = (tileRow << TILE_BITS) + r;
+            for (int c = 0; c < TILE; c++) {
+                int col = (tileCol << TILE_BITS) + c;
+                // draw for every position so the layout does not depend on the board edges
+                boolean bomb = random.nextDouble() < density;
+                if (bomb && row < rows && col < cols
+                        && (Math.abs(row - startRow) > 1 || Math.abs(col - startCol) > 1))
+                    mines[r] |= 1L << c;
+            }
+        }
+        return mines;
+    }
+
+    /**
+     * Get state of a square.
+     *
+     * @param tile tile containing the square
+     * @param row  row of square
+     * @param col  column of square
+     * @return state bits
+     */
+    private byte state(Tile tile, int row, int col) {
+        if (tile.compacted)
+            // every square of a compacted tile is either flagged or revealed
+            return isBomb(row, col) ? FLAGGED : (byte) (REVEALED | countBombs(row, col));
+        if (tile.state == null)
+            return 0;
+        return tile.state[(row & MASK) << TILE_BITS | (col & MASK)];
+    }
+
+    /**
+     * Set state of a hidden unflagged square.
+     *
+     * @param tile  tile containing the square
+     * @param row   row of square
+     * @param col   column of square
+     * @param state state bits
+     */
+    private void setState(Tile tile, int row, int col, byte state) {
+        if (tile.state == null)
+            tile.state = new byte[TILE * TILE];
+        tile.state[(row & MASK) << TILE_BITS | (col & MASK)] = state;
+        tile.unresolved--;
+    }
+
+    /**
+     * Drop arrays of cold tiles, i.e. tiles in which every square is revealed or flagged
+     * and which only border such tiles, so the solver no longer looks at them.
+     * Their state is implied by the bomb layout and regenerated when needed,
+     * which assumes only bombs were flagged and the game is not lost.
+     *
+     * Compacted tiles whose bombs were regenerated since drop them again.
+     *
+     * @return number of newly compacted tiles
+     */
+    public int compact() {
+        if (lost)
+            return 0;
+        int compacted = 0;
+        for (Map.Entry<Long, Tile> entry: tiles.entrySet()) {
+            Tile tile = entry.getValue();
+            // compacted tiles may have regained their bombs since
+            if (tile.compacted && tile.mines == null || tile.unresolved > 0)
+                continue;
+            int tileRow = (int) (entry.getKey() / tileCols);
+            int tileCol = (int) (entry.getKey() % tileCols);
+            if (isCold(tileRow, tileCol)) {
+                if (!tile.compacted)
+                    compacted++;
+                tile.mines = null;
+                tile.state = null;
+                tile.compacted = true;
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * Check if all tiles around a tile are resolved.
+     * Tiles beyond the edges of the board count as resolved,
+     * tiles that were never materialized do not.
+     *
+     * @param tileRow row of tile
+     * @param tileCol column of tile
+     * @return if no neighboring tile has hidden unflagged squares
+     */
+    private boolean isCold(int tileRow, int tileCol) {
+        int tileRows = (rows + MASK) >> TILE_BITS;
+        for (int r = Math.max(0, tileRow - 1); r < Math.min(tileRows, tileRow + 2); r++)
+            for (int c = Math.max(0, tileCol - 1); c < Math.min(tileCols, tileCol + 2); c++) {
+                Tile neighbor = tiles.get((long) r * tileCols + c);
+                if (neighbor == null || neighbor.unresolved > 0)
+                    return false;
+            }
+        return true;
+    }
+
+    public boolean isHiddenUnflagged(int row, int col) {
+        return (state(tile(row, col), row, col) & (REVEALED | FLAGGED)) == 0;
+    }
+
+    public boolean isRevealed(int row, int col) {
+        return (state(tile(row, col), row, col) & REVEALED) != 0;
+    }
+
+    public boolean isFlagged(int row, int col) {
+        return (state(tile(row, col), row, col) & FLAGGED) != 0;
+    }
+
+    /**
+     * Get value of a revealed square.
+     *
+     * @param row row of square
+     * @param col column of square
+     * @return number of neighboring bombs
+     */
+    public int getValue(int row, int col) {
+        return state(tile(row, col), row, col) & VALUE;
+    }
+
+    /**
+     * Take the next square revealed or flagged since the last call.
+     *
+     * @return id of square or -1 if nothing changed
+     */
+    public long pollChanged() {
+        Long id = changed.poll();
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Revealed squares with hidden unflagged neighbors.
+     *
+     * @return unmodifiable view of square ids
+     */
+    public Set<Long> getFrontier() {
+        return Collections.unmodifiableSet(frontier);
+    }
+
+    /**
+     * Convert coordinates to id.
+     *
+     * @param row row of square
+     * @param col column of square
+     * @return id of square
+     */
+    public long id(int row, int col) {
+        return (long) row * cols + col;
+    }
+
+    public int row(long id) {
+        return (int) (id / cols);
+    }
+
+    public int col(long id) {
+        return (int) (id % cols);
+    }
+
+    /**
+     * Check if coordinates lie on a board.
+     *
+     * @param row  row of square
+     * @param col  column of square
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return if square is on the board
+     */
+    private static boolean contains(int row, int col, int rows, int cols) {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public long getRevealed() {
+        return revealed;
+    }
+
+    public long getFlagged() {
+        return flagged;
+    }
+
+    public boolean isLost() {
+        return lost;
+    }
+
+    /**
+     * Count materialized tiles.
+     *
+     * @return number of tiles in memory including compacted ones
+     */
+    public int getTiles() {
+        return tiles.size();
+    }
+
+    /**
+     * Count compacted tiles.
+     *
+     * @return number of tiles without arrays
+     */
+    public int getCompactedTiles() {
+        int compacted = 0;
+        for (Tile tile: tiles.values())
+            if (tile.compacted)
+                compacted++;
+        return compacted;
+    }
+
+}
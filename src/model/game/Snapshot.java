@@ -0,0 +1,68 @@
+package model.game;
+
+/**
+ * Immutable copy of the state of every square of a board.
+ *
+ * Each square is packed into a single int, so a snapshot is one flat array
+ * which may be restored into any number of boards of the same dimensions.
+ */
+public final class Snapshot {
+
+    private final int rows;     // number of rows
+    private final int cols;     // number of columns
+    private final int[] state;  // packed state per square
+
+    /**
+     * Construct snapshot from packed states.
+     *
+     * @param rows  number of rows
+     * @param cols  number of columns
+     * @param state packed state per square, not copied
+     */
+    Snapshot(int rows, int cols, int[] state) {
+        this.rows = rows;
+        this.cols = cols;
+        this.state = state;
+    }
+
+    /**
+     * Pack the state of a square.
+     *
+     * @param s square
+     * @return value, remaining value, remaining info, hidden and flagged in one int
+     */
+    static int pack(Square s) {
+        return (s.getValue() + 1)
+                | (s.getRemainingValue() + 8) << 4
+                | s.getRemainingInfo() << 9
+                | (s.isHidden() ? 1 << 13 : 0)
+                | (s.isFlagged() ? 1 << 14 : 0);
+    }
+
+    /**
+     * Restore the state of a square.
+     *
+     * @param s      square
+     * @param packed packed state
+     */
+    static void unpack(Square s, int packed) {
+        s.setState((packed & 0xF) - 1,
+                (packed >>> 4 & 0x1F) - 8,
+                packed >>> 9 & 0xF,
+                (packed & 1 << 13) != 0,
+                (packed & 1 << 14) != 0);
+    }
+
+    int get(int id) {
+        return state[id];
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+}
@@ -148,6 +148,24 @@ public class Square {
         remainingValue--;
     }
 
+    /**
+     * Overwrite the entire state of the square
+     * without updating its neighbors.
+     *
+     * @param value          number of neighboring bombs or -1 if square is bomb
+     * @param remainingValue number of unflagged neighboring bombs
+     * @param remainingInfo  number of hidden unflagged neighbors
+     * @param hidden         square is hidden
+     * @param flagged        square is flagged
+     */
+    void setState(int value, int remainingValue, int remainingInfo, boolean hidden, boolean flagged) {
+        this.value = value;
+        this.remainingValue = remainingValue;
+        this.remainingInfo = remainingInfo;
+        this.hidden = hidden;
+        this.flagged = flagged;
+    }
+
     public void setNeighbors(ArrayList<Square> neighbors) {
         this.neighbors = neighbors;
         remainingInfo = neighbors.size();
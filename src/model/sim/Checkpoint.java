@@ -0,0 +1,155 @@
+package model.sim;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Persists the progress of a simulation to a small binary file.
+ *
+ * File format:
+ * magic, rows, cols, bombs, start, seed, simulations, #shards,
+ * then per shard: from, to, next, games, wins, histogram.
+ *
+ * Files are written to a temporary sibling first, forced to disk and renamed atomically,
+ * so a crash never leaves a partially written checkpoint behind.
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x4D535731;    // "MSW1"
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Write committed progress of all shards.
+     *
+     * @param path       checkpoint file
+     * @param simulation parameters of the simulation
+     * @param shards     shards of the simulation
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Path path, Simulation simulation, List<Shard> shards) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(simulation.getRows());
+            out.writeInt(simulation.getCols());
+            out.writeInt(simulation.getBombs());
+            out.writeInt(simulation.getStart());
+            out.writeLong(simulation.getSeed());
+            out.writeLong(simulation.getSimulations());
+            out.writeInt(shards.size());
+            for (Shard shard: shards) {
+                Tally tally = shard.getCommittedTally();
+                out.writeLong(shard.getFrom());
+                out.writeLong(shard.getTo());
+                out.writeLong(shard.getCommittedNext());
+                out.writeLong(tally.getGames());
+                out.writeLong(tally.getWins());
+                for (long count: tally.getRevealed())
+                    out.writeLong(count);
+            }
+            // the contents have to be durable before the rename can make them the checkpoint
+            out.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Read shards from a checkpoint.
+     *
+     * @param path       checkpoint file
+     * @param simulation parameters the checkpoint has to match
+     * @return shards with their recorded progress
+     * @throws IOException if the file can not be read or belongs to another simulation
+     */
+    public static List<Shard> read(Path path, Simulation simulation) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(path + " is not a checkpoint");
+            if (in.readInt() != simulation.getRows()
+                    || in.readInt() != simulation.getCols()
+                    || in.readInt() != simulation.getBombs()
+                    || in.readInt() != simulation.getStart()
+                    || in.readLong() != simulation.getSeed()
+                    || in.readLong() != simulation.getSimulations())
+                throw new IOException(path + " belongs to a simulation with different parameters");
+
+            int count = in.readInt();
+            if (count < 1 || count > Math.max(1, simulation.getSimulations()))
+                throw new IOException(path + " is corrupt: " + count + " shards");
+            List<Shard> shards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long from = in.readLong();
+                long to = in.readLong();
+                long next = in.readLong();
+                long games = in.readLong();
+                long wins = in.readLong();
+                long[] revealed = new long[Tally.BUCKETS];
+                for (int b = 0; b < Tally.BUCKETS; b++)
+                    revealed[b] = in.readLong();
+                if (games != next - from)
+                    throw new IOException(path + " is corrupt: shard [" + from + ", " + to + ") played "
+                            + (next - from) + " games but tallied " + games);
+                if (wins < 0 || wins > games)
+                    throw new IOException(path + " is corrupt: shard [" + from + ", " + to + ") won "
+                            + wins + " of " + games + " games");
+                long histogram = 0;
+                for (long bucket: revealed) {
+                    if (bucket < 0)
+                        throw new IOException(path + " is corrupt: shard [" + from + ", " + to
+                                + ") has a negative histogram bucket");
+                    histogram += bucket;
+                }
+                if (histogram != games)
+                    throw new IOException(path + " is corrupt: shard [" + from + ", " + to + ") has "
+                            + histogram + " games in its histogram but tallied " + games);
+                try {
+                    shards.add(new Shard(from, to, next, new Tally(games, wins, revealed)));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + " is corrupt: " + e.getMessage());
+                }
+            }
+            checkCoverage(path, shards, simulation.getSimulations());
+            return shards;
+        }
+    }
+
+    /**
+     * Check that shards cover all games exactly once.
+     *
+     * @param path        checkpoint file
+     * @param shards      shards read from the checkpoint
+     * @param simulations number of games of the simulation
+     * @throws IOException if a game is missing or covered twice
+     */
+    private static void checkCoverage(Path path, List<Shard> shards, long simulations) throws IOException {
+        List<Shard> sorted = new ArrayList<>(shards);
+        sorted.sort(Comparator.comparingLong(Shard::getFrom));
+        long covered = 0;
+        for (Shard shard: sorted) {
+            if (shard.getFrom() != covered)
+                throw new IOException(path + " is corrupt: shards do not cover games from " + covered);
+            covered = shard.getTo();
+        }
+        if (covered != simulations)
+            throw new IOException(path + " is corrupt: shards cover " + covered + " of " + simulations + " games");
+    }
+
+}
@@ -0,0 +1,196 @@
+package model.sim;
+
+import model.ai.Agent;
+import model.ai.SubsetRule;
+import model.ai.TrivialRule;
+import model.game.Board;
+import model.game.Snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Plays every game of a simulation with several agents on the same layout.
+ *
+ * Each layout is generated once and restored from a snapshot for every agent,
+ * so outcomes are paired per board: agents are compared on identical games
+ * instead of on independent samples.
+ */
+public class Comparison {
+
+    private static final int MAX_AGENTS = 16;   // outcome patterns are counted per subset of winners
+
+    private final Simulation simulation;        // dimensions, start, seed and number of games
+    private final List<String> names;           // name per agent
+    private final List<Supplier<Agent>> agents; // creates one agent per thread
+    private final long[] patterns;              // number of games per set of winning agents as bitmask
+
+    /**
+     * Construct comparison.
+     *
+     * @param simulation games to be played
+     * @param names      name per agent
+     * @param agents     factory per agent, called once per thread
+     */
+    public Comparison(Simulation simulation, List<String> names, List<Supplier<Agent>> agents) {
+        if (agents.isEmpty() || agents.size() > MAX_AGENTS)
+            throw new IllegalArgumentException("between 1 and " + MAX_AGENTS + " agents can be compared");
+        if (names.size() != agents.size())
+            throw new IllegalArgumentException("every agent requires a name");
+        this.simulation = simulation;
+        this.names = new ArrayList<>(names);
+        this.agents = new ArrayList<>(agents);
+        this.patterns = new long[1 << agents.size()];
+    }
+
+    /**
+     * Play all games with all agents.
+     *
+     * @param threads number of threads
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void run(int threads) throws InterruptedException {
+        long games = simulation.getSimulations();
+        int count = (int) Math.max(1, Math.min(threads, games));
+        ExecutorService executor = Executors.newFixedThreadPool(count, Threads.daemon("comparison"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long from = games * i / count;
+                long to = games * (i + 1) / count;
+                futures.add(executor.submit(() -> play(from, to)));
+            }
+            for (Future<?> future: futures)
+                future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Play a range of games on the current thread.
+     *
+     * @param from index of first game
+     * @param to   index after last game
+     */
+    private void play(long from, long to) {
+        int rows = simulation.getRows();
+        int cols = simulation.getCols();
+        int bombs = simulation.getBombs();
+        Board layout = new Board(rows, cols, bombs);
+        Board[] boards = new Board[agents.size()];
+        Agent[] players = new Agent[agents.size()];
+        for (int k = 0; k < boards.length; k++) {
+            boards[k] = new Board(rows, cols, bombs);
+            players[k] = agents.get(k).get();
+        }
+        long[] local = new long[patterns.length];
+        for (long index = from; index < to; index++) {
+            layout.generatePacked(simulation.getStart(), Simulation.random(simulation.getSeed(), index));
+            Snapshot snapshot = layout.snapshot();
+            int winners = 0;
+            for (int k = 0; k < boards.length; k++) {
+                boards[k].restore(snapshot);
+                players[k].solve(boards[k]);
+                if (boards[k].won())
+                    winners |= 1 << k;
+            }
+            local[winners]++;
+        }
+        synchronized (patterns) {
+            for (int p = 0; p < patterns.length; p++)
+                patterns[p] += local[p];
+        }
+    }
+
+    /**
+     * Number of games won by an agent.
+     *
+     * @param k index of the agent
+     * @return number of wins
+     */
+    public long getWins(int k) {
+        long wins = 0;
+        synchronized (patterns) {
+            for (int p = 0; p < patterns.length; p++)
+                if ((p & 1 << k) != 0)
+                    wins += patterns[p];
+        }
+        return wins;
+    }
+
+    /**
+     * Paired outcomes of two agents.
+     *
+     * @param a index of first agent
+     * @param b index of second agent
+     * @return number of games won by both, only a, only b and neither
+     */
+    public long[] getPaired(int a, int b) {
+        long[] paired = new long[4];
+        synchronized (patterns) {
+            for (int p = 0; p < patterns.length; p++) {
+                boolean wonA = (p & 1 << a) != 0;
+                boolean wonB = (p & 1 << b) != 0;
+                paired[wonA ? (wonB ? 0 : 1) : (wonB ? 2 : 3)] += patterns[p];
+            }
+        }
+        return paired;
+    }
+
+    /**
+     * Summarize wins per agent and paired outcomes of every pair of agents.
+     *
+     * @return one line per agent and per pair
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder();
+        long games = simulation.getSimulations();
+        for (int k = 0; k < names.size(); k++) {
+            long wins = getWins(k);
+            builder.append(String.format("%-16s %d/%d won (%.2f%%)%n", names.get(k), wins, games,
+                    games == 0 ? 0.0 : wins * 100.0 / games));
+        }
+        for (int a = 0; a < names.size(); a++)
+            for (int b = a + 1; b < names.size(); b++) {
+                long[] paired = getPaired(a, b);
+                builder.append(String.format("%s vs %s: both %d, only %s %d, only %s %d, neither %d%n",
+                        names.get(a), names.get(b), paired[0],
+                        names.get(a), paired[1], names.get(b), paired[2], paired[3]));
+            }
+        return builder.toString();
+    }
+
+    /**
+     * Compare the default agent with agents using a single rule.
+     *
+     * Usage: Comparison rows cols bombs start seed games
+     *
+     * @param args command line arguments
+     * @throws InterruptedException if interrupted while playing
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 6) {
+            System.err.println("usage: Comparison rows cols bombs start seed games");
+            System.exit(2);
+        }
+        Simulation simulation = new Simulation(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                Long.parseLong(args[4]), Long.parseLong(args[5]));
+        List<String> names = List.of("trivial+subset", "trivial", "subset");
+        List<Supplier<Agent>> agents = List.of(
+                Agent::new,
+                () -> new Agent(new TrivialRule()),
+                () -> new Agent(new SubsetRule()));
+        Comparison comparison = new Comparison(simulation, names, agents);
+        long begin = System.nanoTime();
+        comparison.run(Runtime.getRuntime().availableProcessors());
+        System.out.print(comparison.summary());
+        System.out.printf("%.1f s%n", (System.nanoTime() - begin) / 1e9);
+    }
+
+}
@@ -0,0 +1,261 @@
+package model.sim;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Distributes the games of a simulation to worker processes over TCP.
+ *
+ * Workers connect to the coordinator and receive the parameters of the simulation,
+ * then repeatedly receive (from, to) index ranges and stream back one byte per game.
+ * If a worker fails, the games it did not report are handed to another worker.
+ *
+ * Protocol, coordinator to worker:
+ * rows, cols, bombs, start, seed once after connecting,
+ * then SHARD from to or QUIT.
+ * Worker to coordinator:
+ * one byte per game in index order, the highest bit is set if the game was won,
+ * the lower bits hold the percentage of safe squares revealed.
+ */
+public class Coordinator {
+
+    static final byte SHARD = 'S';      // command to play a range of games
+    static final byte QUIT = 'Q';       // command to disconnect
+    static final int WON = 0x80;        // bit of result byte set if game was won
+    static final int TIMEOUT = 60_000;  // milliseconds a worker may stay silent
+
+    private final Simulation simulation;            // parameters of the simulation
+    private final long shardSize;                   // number of games per shard
+    private final BlockingQueue<Shard> pending;     // shards not yet handed out
+    private final List<Socket> sockets;             // connected workers
+    private final Tally tally;                      // outcomes reported by workers
+    private final CountDownLatch done;              // released when all games are reported
+    private long reported;                          // number of games reported
+    private LongConsumer progress;                  // receives number of reported games
+
+    /**
+     * Construct coordinator.
+     *
+     * @param simulation parameters of the simulation
+     * @param shardSize  number of games handed to a worker at once
+     */
+    public Coordinator(Simulation simulation, long shardSize) {
+        if (shardSize < 1)
+            throw new IllegalArgumentException("shard size has to be positive");
+        this.simulation = simulation;
+        this.shardSize = shardSize;
+        this.pending = new LinkedBlockingQueue<>();
+        this.sockets = new ArrayList<>();
+        this.tally = new Tally();
+        this.done = new CountDownLatch(1);
+        this.progress = reported -> { };
+    }
+
+    /**
+     * Accept workers and hand out shards until every game is reported.
+     * Workers may connect or disconnect at any time.
+     *
+     * @param server socket workers connect to, closed when finished
+     * @return merged outcomes of all games
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    public Tally run(ServerSocket server) throws InterruptedException {
+        long simulations = simulation.getSimulations();
+        for (long from = 0; from < simulations; from += shardSize)
+            pending.add(new Shard(from, Math.min(simulations, from + shardSize)));
+        if (simulations == 0)
+            done.countDown();
+
+        Thread acceptor = new Thread(() -> accept(server), "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            done.await();
+        } finally {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+            }
+        }
+        synchronized (this) {
+            return tally.copy();
+        }
+    }
+
+    /**
+     * Accept connections and serve each worker on its own thread.
+     *
+     * @param server socket workers connect to
+     */
+    private void accept(ServerSocket server) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                synchronized (sockets) {
+                    sockets.add(socket);
+                }
+                Thread handler = new Thread(() -> serve(socket), "coordinator-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (SocketException e) {
+                // server socket was closed
+                return;
+            } catch (IOException e) {
+                System.err.println("failed to accept worker: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hand out shards to a single worker until all games are reported
+     * or the worker fails.
+     *
+     * @param socket connection to worker
+     */
+    private void serve(Socket socket) {
+        Shard shard = null;
+        try (Socket s = socket) {
+            s.setSoTimeout(TIMEOUT);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+            out.writeInt(simulation.getRows());
+            out.writeInt(simulation.getCols());
+            out.writeInt(simulation.getBombs());
+            out.writeInt(simulation.getStart());
+            out.writeLong(simulation.getSeed());
+            out.flush();
+
+            while (done.getCount() > 0) {
+                shard = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (shard == null)
+                    continue;
+                out.writeByte(SHARD);
+                out.writeLong(shard.getFrom());
+                out.writeLong(shard.getTo());
+                out.flush();
+                while (!shard.isDone()) {
+                    int result = in.read();
+                    if (result < 0)
+                        throw new EOFException("worker disconnected");
+                    int percent = result & ~WON;
+                    if (percent >= Tally.BUCKETS)
+                        throw new IOException("worker reported " + percent + "% revealed");
+                    shard.record((result & WON) != 0, percent);
+                }
+                report(shard);
+                shard = null;
+            }
+            out.writeByte(QUIT);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("worker " + socket.getRemoteSocketAddress() + " failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // keep what the worker reported and hand out the rest again
+            if (shard != null) {
+                report(shard);
+                if (!shard.isDone())
+                    pending.add(new Shard(shard.getNext(), shard.getTo()));
+            }
+            synchronized (sockets) {
+                sockets.remove(socket);
+            }
+        }
+    }
+
+    /**
+     * Merge games reported for a shard.
+     *
+     * @param shard fully or partially played shard
+     */
+    private synchronized void report(Shard shard) {
+        shard.commit();
+        Tally played = shard.getCommittedTally();
+        tally.add(played);
+        reported += played.getGames();
+        progress.accept(reported);
+        if (reported >= simulation.getSimulations())
+            done.countDown();
+    }
+
+    /**
+     * Number of currently connected workers.
+     *
+     * @return number of connections
+     */
+    public int getWorkers() {
+        synchronized (sockets) {
+            return sockets.size();
+        }
+    }
+
+    public void setProgress(LongConsumer progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Start worker processes on this machine running the current classpath.
+     *
+     * @param count       number of processes
+     * @param port        port of the coordinator
+     * @param connections number of connections, i.e. threads, per process
+     * @return started processes
+     * @throws IOException if a process can not be started
+     */
+    public static List<Process> startLocalWorkers(int count, int port, int connections) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> processes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    Worker.class.getName(), "localhost", String.valueOf(port), String.valueOf(connections))
+                    .inheritIO()
+                    .start());
+        return processes;
+    }
+
+    /**
+     * Run a distributed simulation from the command line.
+     *
+     * Arguments:
+     * rows cols bombs start seed simulations port [local workers] [shard size]
+     *
+     * @param args command line arguments
+     * @throws Exception if the simulation fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 7) {
+            System.err.println("usage: Coordinator rows cols bombs start seed simulations port [local workers] [shard size]");
+            System.exit(2);
+        }
+        Simulation simulation = new Simulation(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                Long.parseLong(args[4]), Long.parseLong(args[5]));
+        int port = Integer.parseInt(args[6]);
+        int local = args.length > 7 ? Integer.parseInt(args[7]) : 0;
+        long shardSize = args.length > 8 ? Long.parseLong(args[8]) : 100_000;
+
+        ServerSocket server = new ServerSocket(port);
+        List<Process> workers = startLocalWorkers(local, server.getLocalPort(),
+                Runtime.getRuntime().availableProcessors() / Math.max(1, local) + 1);
+        try {
+            long time = System.currentTimeMillis();
+            Tally tally = new Coordinator(simulation, shardSize).run(server);
+            double duration = (1.0 * System.currentTimeMillis() - time) / 1000;
+            System.out.println("solved " + tally.getWinRate() + "% of " + tally.getGames()
+                    + " boards in " + duration + " s");
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package model.sim;
+
+import model.ai.Agent;
+import model.game.Board;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Solves every board file in a directory.
+ *
+ * Files are read on an I/O executor, virtual threads if the runtime provides them,
+ * and solved on a fixed pool with one thread per processor.
+ * A semaphore bounds the number of files read but not yet solved,
+ * so reading never runs ahead of solving by more than that many files.
+ */
+public class Corpus {
+
+    /**
+     * Outcome of solving a single board file.
+     */
+    public static class Result {
+
+        /**
+         * Possible outcomes.
+         */
+        public enum Status { SOLVED, STALLED, INVALID }
+
+        private final Path path;        // board file
+        private final Status status;    // outcome
+        private final int revealed;     // number of revealed squares
+        private final int squares;      // number of squares
+        private final long nanos;       // time spent parsing and solving
+        private final String error;     // reason the file is invalid or null
+
+        Result(Path path, Status status, int revealed, int squares, long nanos, String error) {
+            this.path = path;
+            this.status = status;
+            this.revealed = revealed;
+            this.squares = squares;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getRevealed() {
+            return revealed;
+        }
+
+        public int getSquares() {
+            return squares;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * Format as tab separated line.
+         *
+         * @return path, status, revealed, squares, microseconds and error
+         */
+        @Override
+        public String toString() {
+            return path + "\t" + status + "\t" + revealed + "\t" + squares + "\t" + nanos / 1000
+                    + (error == null ? "" : "\t" + error);
+        }
+
+    }
+
+    private final int threads;      // number of solving threads
+    private final int inFlight;     // maximum number of files read but not yet solved
+
+    /**
+     * Construct corpus solver.
+     *
+     * @param threads  number of solving threads
+     * @param inFlight maximum number of files read but not yet solved
+     */
+    public Corpus(int threads, int inFlight) {
+        if (threads < 1 || inFlight < 1)
+            throw new IllegalArgumentException("threads and files in flight have to be positive");
+        this.threads = threads;
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * Solve all regular files below a directory matching a glob.
+     * Results are passed to the sink one at a time in order of completion.
+     *
+     * @param directory root of the corpus
+     * @param glob      pattern matched against file names and relative paths, e.g. *.txt
+     * @param sink      receives one result per file
+     * @throws IOException          if the directory can not be walked
+     * @throws InterruptedException if interrupted while waiting for results
+     */
+    public void solve(Path directory, String glob, Consumer<Result> sink) throws IOException, InterruptedException {
+        PathMatcher matcher = directory.getFileSystem().getPathMatcher("glob:" + glob);
+        Semaphore permits = new Semaphore(inFlight);
+        ExecutorService io = newIoExecutor();
+        ExecutorService cpu = Executors.newFixedThreadPool(threads, Threads.daemon("corpus-solve"));
+        ThreadLocal<Agent> agents = ThreadLocal.withInitial(Agent::new);
+        Consumer<Result> serialized = result -> {
+            synchronized (sink) {
+                sink.accept(result);
+            }
+        };
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                if (!Files.isRegularFile(path)
+                        || !(matcher.matches(path.getFileName()) || matcher.matches(directory.relativize(path))))
+                    continue;
+                // wait until solving catches up
+                permits.acquire();
+                io.execute(() -> {
+                    long time = System.nanoTime();
+                    boolean queued = false;     // if the solver took over the permit
+                    try {
+                        String content = Board.readLine(path);
+                        cpu.execute(() -> {
+                            try {
+                                serialized.accept(solve(path, content, agents.get()));
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                        queued = true;
+                    } catch (IOException e) {
+                        serialized.accept(new Result(path, Result.Status.INVALID, 0, 0,
+                                System.nanoTime() - time, "unreadable: " + e.getMessage()));
+                    } catch (RejectedExecutionException e) {
+                        // solving was shut down, nobody waits for this file anymore
+                    } catch (RuntimeException | Error e) {
+                        serialized.accept(new Result(path, Result.Status.INVALID, 0, 0,
+                                System.nanoTime() - time, "unreadable: " + e));
+                    } finally {
+                        if (!queued)
+                            permits.release();
+                    }
+                });
+            }
+            // all permits are returned once every file is solved
+            permits.acquire(inFlight);
+        } finally {
+            io.shutdownNow();
+            cpu.shutdownNow();
+        }
+    }
+
+    /**
+     * Parse and solve a single board.
+     *
+     * @param path    board file
+     * @param content first line of the board file
+     * @param agent   agent of the current thread
+     * @return outcome
+     */
+    private static Result solve(Path path, String content, Agent agent) {
+        long time = System.nanoTime();
+        try {
+            Board board = Board.parse(content);
+            agent.solve(board);
+            int squares = board.getSquares().size();
+            return new Result(path, board.won() ? Result.Status.SOLVED : Result.Status.STALLED,
+                    board.countRevealed(), squares, System.nanoTime() - time, null);
+        } catch (IOException e) {
+            return new Result(path, Result.Status.INVALID, 0, 0, System.nanoTime() - time, e.getMessage());
+        } catch (RuntimeException | Error e) {
+            // report the file instead of losing its result on the solver thread
+            return new Result(path, Result.Status.INVALID, 0, 0, System.nanoTime() - time, e.toString());
+        }
+    }
+
+    /**
+     * Create executor for reading files.
+     * Uses a virtual thread per file if the runtime supports them,
+     * otherwise a bounded pool of platform threads.
+     *
+     * @return executor for blocking file reads
+     */
+    private ExecutorService newIoExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.min(inFlight, 64), Threads.daemon("corpus-read"));
+        }
+    }
+
+    /**
+     * Solve a corpus from the command line and print one tab separated line per file:
+     * path, status, revealed squares, squares, microseconds and error.
+     *
+     * Arguments:
+     * directory [glob] [threads]
+     *
+     * @param args command line arguments
+     * @throws Exception if the directory can not be walked
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: Corpus directory [glob] [threads]");
+            System.exit(2);
+        }
+        String glob = args.length > 1 ? args[1] : "*";
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int[] counts = new int[Result.Status.values().length];
+        new Corpus(threads, threads * 4).solve(Paths.get(args[0]), glob, result -> {
+            counts[result.getStatus().ordinal()]++;
+            System.out.println(result);
+        });
+        System.err.println("solved " + counts[0] + ", stalled " + counts[1] + ", invalid " + counts[2]);
+    }
+
+}
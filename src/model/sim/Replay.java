@@ -0,0 +1,106 @@
+package model.sim;
+
+import model.ai.Agent;
+import model.ai.Trace;
+import model.game.Board;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a traced game.
+ *
+ * The game is regenerated from (seed, index) and solved again by an agent
+ * with the same rules and a trace large enough to keep every event. The dumped events have to match the end
+ * of the new trace, since a dump only keeps the most recent events.
+ * Then the full trace is printed, applying flags and reveals to a fresh board
+ * and printing the board whenever a rule starts on a changed board.
+ */
+public class Replay {
+
+    private Replay() {
+    }
+
+    /**
+     * Find the first dumped event that differs from a replayed trace.
+     *
+     * @param dumped   dumped events, the most recent ones of the game
+     * @param replayed all events of the replayed game
+     * @return index into the dumped events or -1 if all match
+     */
+    public static int diverges(long[] dumped, long[] replayed) {
+        int offset = replayed.length - dumped.length;
+        if (offset < 0)
+            return 0;
+        for (int i = 0; i < dumped.length; i++)
+            if (dumped[i] != replayed[offset + i])
+                return i;
+        return -1;
+    }
+
+    /**
+     * Replay a trace file.
+     *
+     * Usage: Replay trace-file [step]
+     * With step, waits for enter whenever the board is printed.
+     *
+     * @param args command line arguments
+     * @throws IOException if the trace can not be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: Replay trace-file [step]");
+            System.exit(2);
+        }
+        boolean step = args.length > 1 && args[1].equals("step");
+        TraceDump dump = TraceDump.read(Paths.get(args[0]));
+        Simulation simulation = dump.getSimulation();
+        if (dump.getCount() > 1 << 30)
+            throw new IOException("trace of " + dump.getCount() + " events is too long to replay");
+
+        // solve again with the same rules keeping every event
+        Agent agent = dump.agent();
+        Trace trace = Trace.start((int) Math.max(1, dump.getCount()));
+        Board board = new Board(simulation.getRows(), simulation.getCols(), simulation.getBombs());
+        boolean won = simulation.play(board, agent, dump.getIndex());
+        long[] events = trace.getEvents();
+        Trace.stop();
+
+        long[] dumped = dump.getEvents();
+        int diverges = diverges(dumped, events);
+        System.out.println("game " + dump.getIndex() + " of seed " + simulation.getSeed() + (won ? " won" : " lost")
+                + ", " + events.length + " events replayed, " + dumped.length + " of " + dump.getCount() + " dumped");
+        if (diverges >= 0 || events.length != dump.getCount())
+            System.out.println("replay diverges from the dump at dumped event " + Math.max(0, diverges)
+                    + ", the solver is not deterministic or changed since the dump");
+
+        Board replay = new Board(simulation.getRows(), simulation.getCols(), simulation.getBombs());
+        replay.generatePacked(simulation.getStart(), Simulation.random(simulation.getSeed(), dump.getIndex()));
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        boolean changed = true;
+        for (int i = 0; i < events.length; i++) {
+            int type = Trace.getType(events[i]);
+            if (type == Trace.RULE && changed) {
+                replay.printV();
+                changed = false;
+                if (step && in.readLine() == null)
+                    return;
+            }
+            System.out.println(i + ": " + Trace.describe(events[i], simulation.getCols()));
+            if (type == Trace.FLAG || type == Trace.REVEAL) {
+                List<Integer> id = List.of(Trace.getB(events[i]));
+                if (type == Trace.FLAG)
+                    replay.flagAll(new ArrayList<>(id));
+                else
+                    replay.revealAll(new ArrayList<>(id));
+                changed = true;
+            }
+        }
+        replay.printV();
+    }
+
+}
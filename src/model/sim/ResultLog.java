@@ -0,0 +1,198 @@
+package model.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends per-game results of one shard to a binary file.
+ *
+ * Results are buffered in primitive arrays and written as a block of columns,
+ * so recording a game only stores four values.
+ * Each shard owns its writer, so no synchronization is needed.
+ *
+ * File format:
+ * magic, rows, cols, bombs, start, seed, simulations,
+ * then per block: index of first game, #games,
+ * revealed squares, rule applications and unflagged bombs per game as ints,
+ * solve time per game in nanoseconds as longs.
+ *
+ * Blocks are written when the shard commits, so a log resumed from a checkpoint
+ * is truncated to the blocks committed before and never contains a game twice.
+ */
+public class ResultLog implements Closeable {
+
+    static final int MAGIC = 0x4D535252;        // "MSRR"
+    static final int HEADER = 36;               // bytes of the file header
+    static final int BLOCK_HEADER = 12;         // bytes of a block header
+    static final int BYTES_PER_GAME = 20;       // bytes of the columns per game
+
+    private final FileChannel channel;  // log file
+    private final ByteBuffer buffer;    // block being written
+    private final int[] revealed;       // revealed squares per buffered game
+    private final int[] iterations;     // rule applications per buffered game
+    private final int[] unflagged;      // bombs left unflagged per buffered game
+    private final long[] nanos;         // solve time per buffered game
+    private long from;                  // index of first buffered game
+    private int count;                  // number of buffered games
+
+    /**
+     * Open log of a shard, dropping blocks of games at or after the given index.
+     *
+     * @param path       log file, created if missing
+     * @param simulation parameters the log has to match
+     * @param next       index of the next game to be played
+     * @param capacity   maximum number of games per block
+     * @throws IOException if the file can not be opened or belongs to another simulation
+     */
+    public ResultLog(Path path, Simulation simulation, long next, int capacity) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BLOCK_HEADER + capacity * BYTES_PER_GAME);
+        this.revealed = new int[capacity];
+        this.iterations = new int[capacity];
+        this.unflagged = new int[capacity];
+        this.nanos = new long[capacity];
+        this.from = next;
+        try {
+            truncate(path, simulation, next);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Write the file header of a new log or drop blocks not covered by the checkpoint.
+     *
+     * @param path       log file
+     * @param simulation parameters the log has to match
+     * @param next       index of the next game to be played
+     * @throws IOException if the file belongs to another simulation
+     */
+    private void truncate(Path path, Simulation simulation, long next) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (channel.size() < HEADER) {
+            header.putInt(MAGIC).putInt(simulation.getRows()).putInt(simulation.getCols()).putInt(simulation.getBombs())
+                    .putInt(simulation.getStart()).putLong(simulation.getSeed()).putLong(simulation.getSimulations());
+            header.flip();
+            channel.truncate(0);
+            write(channel, header, 0);
+            channel.position(HEADER);
+            return;
+        }
+        read(channel, header, 0);
+        if (header.getInt() != MAGIC)
+            throw new IOException(path + " is not a result log");
+        if (header.getInt() != simulation.getRows()
+                || header.getInt() != simulation.getCols()
+                || header.getInt() != simulation.getBombs()
+                || header.getInt() != simulation.getStart()
+                || header.getLong() != simulation.getSeed()
+                || header.getLong() != simulation.getSimulations())
+            throw new IOException(path + " belongs to a simulation with different parameters");
+
+        // keep complete blocks of games before the next one
+        long position = HEADER;
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER);
+        while (position + BLOCK_HEADER <= channel.size()) {
+            block.clear();
+            read(channel, block, position);
+            long first = block.getLong();
+            int games = block.getInt();
+            long end = position + BLOCK_HEADER + (long) games * BYTES_PER_GAME;
+            if (first + games > next || end > channel.size())
+                break;
+            position = end;
+        }
+        channel.truncate(position);
+        channel.position(position);
+    }
+
+    /**
+     * Record the result of the next game.
+     *
+     * @param revealed   number of revealed squares
+     * @param iterations number of rule applications
+     * @param unflagged  number of bombs left unflagged
+     * @param nanos      time to generate and solve the board
+     * @throws IOException if a full block can not be written
+     */
+    public void record(int revealed, int iterations, int unflagged, long nanos) throws IOException {
+        if (count == this.revealed.length)
+            flush();
+        this.revealed[count] = revealed;
+        this.iterations[count] = iterations;
+        this.unflagged[count] = unflagged;
+        this.nanos[count] = nanos;
+        count++;
+    }
+
+    /**
+     * Append buffered games as one block.
+     *
+     * @throws IOException if the block can not be written
+     */
+    public void flush() throws IOException {
+        if (count == 0)
+            return;
+        buffer.clear();
+        buffer.putLong(from).putInt(count);
+        buffer.asIntBuffer().put(revealed, 0, count);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        buffer.asIntBuffer().put(iterations, 0, count);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        buffer.asIntBuffer().put(unflagged, 0, count);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        buffer.asLongBuffer().put(nanos, 0, count);
+        buffer.position(buffer.position() + count * Long.BYTES);
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        from += count;
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read until the buffer is full.
+     *
+     * @param channel  file
+     * @param buffer   buffer to be filled and flipped
+     * @param position position in the file
+     * @throws IOException if the file ends early
+     */
+    static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                throw new IOException("unexpected end of result log");
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Write the whole buffer.
+     *
+     * @param channel  file
+     * @param buffer   buffer to be written
+     * @param position position in the file
+     * @throws IOException if the file can not be written
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+}
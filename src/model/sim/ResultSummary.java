@@ -0,0 +1,205 @@
+package model.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Aggregates result logs written by a simulation.
+ *
+ * Each block is read in one call and its columns are scanned as primitive views,
+ * so summarizing is bound by the speed of the disk.
+ */
+public class ResultSummary {
+
+    public static final String SUFFIX = ".results";     // file name suffix of result logs
+
+    private int rows;                   // number of rows of the logged games
+    private int cols;                   // number of columns of the logged games
+    private int bombs;                  // number of bombs of the logged games
+    private int start;                  // start square of the logged games
+    private long seed;                  // seed of the logged simulation
+    private long simulations;           // number of games of the logged simulation
+    private final Tally tally;          // wins and histogram of percentage revealed
+    private long iterations;            // sum of rule applications
+    private int maxIterations;          // maximum rule applications of a game
+    private long unflagged;             // sum of bombs left unflagged
+    private long nanos;                 // sum of solve times
+    private final long[] times;         // histogram of solve times by power of two nanoseconds
+    private int files;                  // number of logs added
+
+    /**
+     * Construct empty summary.
+     */
+    public ResultSummary() {
+        this.tally = new Tally();
+        this.times = new long[64];
+    }
+
+    /**
+     * Add all result logs of a directory.
+     *
+     * @param directory directory a simulation logged to
+     * @throws IOException if a log can not be read
+     */
+    public void addAll(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file: files)
+                add(file);
+        }
+    }
+
+    /**
+     * Add all games of a result log.
+     *
+     * @param path result log
+     * @throws IOException if the log can not be read or belongs to another simulation
+     */
+    public void add(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(ResultLog.HEADER);
+            ResultLog.read(channel, header, 0);
+            if (header.getInt() != ResultLog.MAGIC)
+                throw new IOException(path + " is not a result log");
+            int rows = header.getInt();
+            int cols = header.getInt();
+            int bombs = header.getInt();
+            int start = header.getInt();
+            long seed = header.getLong();
+            long simulations = header.getLong();
+            if (files++ == 0) {
+                this.rows = rows;
+                this.cols = cols;
+                this.bombs = bombs;
+                this.start = start;
+                this.seed = seed;
+                this.simulations = simulations;
+            } else if (rows != this.rows || cols != this.cols || bombs != this.bombs
+                    || start != this.start || seed != this.seed || simulations != this.simulations) {
+                throw new IOException(path + " belongs to a simulation with different parameters");
+            }
+            int safe = rows * cols - bombs;
+
+            ByteBuffer block = ByteBuffer.allocateDirect(1 << 16);
+            long position = ResultLog.HEADER;
+            while (position < channel.size()) {
+                block.clear().limit(ResultLog.BLOCK_HEADER);
+                ResultLog.read(channel, block, position);
+                block.getLong();
+                int games = block.getInt();
+                int length = games * ResultLog.BYTES_PER_GAME;
+                if (block.capacity() < length)
+                    block = ByteBuffer.allocateDirect(length);
+                block.clear().limit(length);
+                ResultLog.read(channel, block, position + ResultLog.BLOCK_HEADER);
+                add(block, games, safe);
+                position += ResultLog.BLOCK_HEADER + length;
+            }
+        }
+    }
+
+    /**
+     * Add the columns of one block.
+     *
+     * @param block columns of the block
+     * @param games number of games in the block
+     * @param safe  number of safe squares per game
+     */
+    private void add(ByteBuffer block, int games, int safe) {
+        IntBuffer revealed = block.slice().asIntBuffer();
+        IntBuffer iterations = block.position(games * Integer.BYTES).slice().asIntBuffer();
+        IntBuffer unflagged = block.position(2 * games * Integer.BYTES).slice().asIntBuffer();
+        LongBuffer nanos = block.position(3 * games * Integer.BYTES).slice().asLongBuffer();
+        for (int i = 0; i < games; i++) {
+            int r = revealed.get(i);
+            int u = unflagged.get(i);
+            // a game is won once every safe square is revealed and every bomb flagged
+            tally.add(r == safe && u == 0, safe == 0 ? 100 : (int) (r * 100L / safe));
+            int n = iterations.get(i);
+            this.iterations += n;
+            maxIterations = Math.max(maxIterations, n);
+            this.unflagged += u;
+            long t = nanos.get(i);
+            this.nanos += t;
+            times[63 - Long.numberOfLeadingZeros(Math.max(1, t))]++;
+        }
+    }
+
+    /**
+     * Upper bound of a percentile of the solve time.
+     *
+     * @param percentile percentile from 0 to 100
+     * @return smallest power of two nanoseconds not exceeded by the percentile
+     */
+    public long getTimePercentile(double percentile) {
+        long rank = (long) Math.ceil(tally.getGames() * percentile / 100);
+        long seen = 0;
+        for (int b = 0; b < times.length; b++) {
+            seen += times[b];
+            if (seen >= rank && seen > 0)
+                return 2L << b;
+        }
+        return 0;
+    }
+
+    public Tally getTally() {
+        return tally;
+    }
+
+    public double getMeanIterations() {
+        return tally.getGames() == 0 ? 0 : (double) iterations / tally.getGames();
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public double getMeanUnflagged() {
+        return tally.getGames() == 0 ? 0 : (double) unflagged / tally.getGames();
+    }
+
+    public double getMeanNanos() {
+        return tally.getGames() == 0 ? 0 : (double) nanos / tally.getGames();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d of %d games %dx%d/%d from %d with seed %d, %.2f%% won, %.1f rule applications (max %d), "
+                        + "%.1f bombs unflagged, %.1f us per game (p50 <= %d us, p99 <= %d us)",
+                tally.getGames(), simulations, rows, cols, bombs, start, seed, tally.getWinRate(),
+                getMeanIterations(), maxIterations, getMeanUnflagged(), getMeanNanos() / 1000,
+                getTimePercentile(50) / 1000, getTimePercentile(99) / 1000);
+    }
+
+    /**
+     * Summarize result logs.
+     *
+     * Usage: ResultSummary directory|file...
+     *
+     * @param args command line arguments
+     * @throws IOException if a log can not be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: ResultSummary directory|file...");
+            System.exit(2);
+        }
+        ResultSummary summary = new ResultSummary();
+        for (String arg: args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path))
+                summary.addAll(path);
+            else
+                summary.add(path);
+        }
+        System.out.println(summary);
+    }
+
+}
@@ -0,0 +1,91 @@
+package model.sim;
+
+/**
+ * Represents a contiguous range of game indices of a simulation.
+ *
+ * Progress is tracked by the index of the next game to be played.
+ * Only the thread playing the shard may update it,
+ * other threads read the committed copy instead.
+ */
+public class Shard {
+
+    private final long from;        // index of first game
+    private final long to;          // index after last game
+    private long next;              // index of next game to be played
+    private final Tally tally;      // outcomes of games played so far
+    private long committedNext;     // next index at last commit
+    private Tally committedTally;   // outcomes at last commit
+
+    /**
+     * Construct shard without any games played.
+     *
+     * @param from index of first game
+     * @param to   index after last game
+     */
+    public Shard(long from, long to) {
+        this(from, to, from, new Tally());
+    }
+
+    /**
+     * Construct partially played shard.
+     *
+     * @param from  index of first game
+     * @param to    index after last game
+     * @param next  index of next game to be played
+     * @param tally outcomes of games played so far
+     */
+    public Shard(long from, long to, long next, Tally tally) {
+        if (from > to || next < from || next > to)
+            throw new IllegalArgumentException("invalid shard range " + from + ".." + next + ".." + to);
+        this.from = from;
+        this.to = to;
+        this.next = next;
+        this.tally = tally;
+        commit();
+    }
+
+    /**
+     * Record the outcome of the next game and advance.
+     *
+     * @param won     if the game was won
+     * @param percent percentage of safe squares revealed
+     */
+    public void record(boolean won, int percent) {
+        tally.add(won, percent);
+        next++;
+    }
+
+    /**
+     * Publish current progress for other threads.
+     * Callers have to synchronize on a common lock.
+     */
+    public void commit() {
+        committedNext = next;
+        committedTally = tally.copy();
+    }
+
+    public boolean isDone() {
+        return next >= to;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public long getNext() {
+        return next;
+    }
+
+    public long getCommittedNext() {
+        return committedNext;
+    }
+
+    public Tally getCommittedTally() {
+        return committedTally;
+    }
+
+}
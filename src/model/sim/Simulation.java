@@ -0,0 +1,401 @@
+package model.sim;
+
+import model.ai.Agent;
+import model.ai.RuleStats;
+import model.ai.Trace;
+import model.game.Board;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Plays a large number of randomly generated games without any UI.
+ *
+ * Every game is addressed by (seed, index), so any range of games
+ * can be replayed independently of the games played before.
+ * The index range is split into shards which are played in parallel
+ * and whose progress may be checkpointed to a file to resume later.
+ */
+public class Simulation {
+
+    private static final int COMMIT_INTERVAL = 1024;    // games between commits of a shard
+    private static final int TRACE_CAPACITY = 1 << 16;  // solver events kept per thread
+
+    private final int rows;             // number of rows
+    private final int cols;             // number of columns
+    private final int bombs;            // number of bombs
+    private final int start;            // id of first square to be revealed
+    private final long seed;            // seed of the simulation
+    private final long simulations;     // number of games to be played
+
+    private int shards;                 // number of shards played in parallel
+    private Path checkpoint;            // checkpoint file or null
+    private long checkpointMillis;      // minimum time between checkpoints
+    private LongConsumer progress;      // receives number of completed games
+    private Path resultLog;             // directory of per-game result logs or null
+    private Path traces;                // directory of solver traces or null
+    private boolean traceFailed;        // dump traces of lost games
+    private LongPredicate traceSelected;    // selects indices of games to dump traces of
+
+    private final AtomicLong completed; // number of completed games
+    private volatile boolean cancelled; // simulation was cancelled
+    private long lastCheckpoint;        // time of last checkpoint
+    private final List<RuleStats> ruleStats;    // merged statistics of the agents' rules
+
+    /**
+     * Construct simulation.
+     *
+     * @param rows        number of rows
+     * @param cols        number of columns
+     * @param bombs       number of bombs
+     * @param start       id of first square to be revealed
+     * @param seed        seed of the simulation
+     * @param simulations number of games to be played
+     */
+    public Simulation(int rows, int cols, int bombs, int start, long seed, long simulations) {
+        if (start < 0 || start >= rows * cols)
+            throw new IllegalArgumentException("start square is not on the board");
+        this.rows = rows;
+        this.cols = cols;
+        this.bombs = bombs;
+        this.start = start;
+        this.seed = seed;
+        this.simulations = simulations;
+        this.shards = Runtime.getRuntime().availableProcessors();
+        this.checkpointMillis = 10_000;
+        this.progress = completed -> { };
+        this.completed = new AtomicLong();
+        this.ruleStats = new ArrayList<>();
+    }
+
+    /**
+     * Derive the random source of a single game.
+     * Mixes seed and index so neighboring indices produce unrelated games.
+     *
+     * @param seed  seed of the simulation
+     * @param index index of the game
+     * @return seeded random source
+     */
+    public static Random random(long seed, long index) {
+        long z = seed * 0x9E3779B97F4A7C15L + index;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new Random(z ^ (z >>> 31));
+    }
+
+    /**
+     * Generate and solve the game with the given index.
+     *
+     * @param board board with the dimensions of the simulation
+     * @param agent agent to solve the board
+     * @param index index of the game
+     * @return if the game was won
+     */
+    public boolean play(Board board, Agent agent, long index) {
+        board.generatePacked(start, random(seed, index));
+        agent.solve(board);
+        return board.won();
+    }
+
+    /**
+     * Compute percentage of safe squares revealed on a played board.
+     *
+     * @param board played board
+     * @return percentage from 0 to 100
+     */
+    public int percentRevealed(Board board) {
+        return percentRevealed(board.countRevealed());
+    }
+
+    /**
+     * Compute percentage of safe squares revealed.
+     *
+     * @param revealed number of revealed squares
+     * @return percentage from 0 to 100
+     */
+    private int percentRevealed(int revealed) {
+        int safe = rows * cols - bombs;
+        return safe == 0 ? 100 : (int) (revealed * 100L / safe);
+    }
+
+    /**
+     * Play all games, resuming from the checkpoint if there is one.
+     *
+     * @return merged outcomes of all games played,
+     *         partial if the simulation was cancelled
+     * @throws IOException if the checkpoint can not be read or written
+     */
+    public Tally run() throws IOException {
+        boolean resume = checkpoint != null && Files.exists(checkpoint);
+        List<Shard> parts = resume ? Checkpoint.read(checkpoint, this) : split();
+        // logs of an earlier run would otherwise be summarized together with this one
+        if (resultLog != null && !resume)
+            try (DirectoryStream<Path> logs = Files.newDirectoryStream(resultLog, "shard-*" + ResultSummary.SUFFIX)) {
+                for (Path log: logs)
+                    Files.delete(log);
+            }
+
+        long done = 0;
+        for (Shard shard: parts)
+            done += shard.getNext() - shard.getFrom();
+        completed.set(done);
+        progress.accept(done);
+        lastCheckpoint = System.currentTimeMillis();
+
+        // play unfinished shards on daemon threads to not keep the JVM alive
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parts.size()),
+                Threads.daemon("simulation"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Shard shard: parts)
+                if (!shard.isDone())
+                    futures.add(executor.submit(() -> {
+                        play(shard, parts);
+                        return null;
+                    }));
+            for (Future<?> future: futures)
+                future.get();
+        } catch (ExecutionException e) {
+            cancelled = true;
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            cancelled = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+
+        if (checkpoint != null)
+            synchronized (this) {
+                Checkpoint.write(checkpoint, this, parts);
+            }
+
+        Tally tally = new Tally();
+        for (Shard shard: parts)
+            tally.add(shard.getCommittedTally());
+        return tally;
+    }
+
+    /**
+     * Split the index range into shards of about equal size.
+     *
+     * @return list of unplayed shards
+     */
+    private List<Shard> split() {
+        int count = (int) Math.max(1, Math.min(shards, simulations));
+        List<Shard> parts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            parts.add(new Shard(simulations * i / count, simulations * (i + 1) / count));
+        return parts;
+    }
+
+    /**
+     * Play the remaining games of a shard on the current thread.
+     *
+     * @param shard shard to be played
+     * @param parts all shards of the simulation
+     * @throws IOException if the checkpoint can not be written
+     */
+    private void play(Shard shard, List<Shard> parts) throws IOException {
+        Board board = new Board(rows, cols, bombs);
+        Agent agent = new Agent();
+        // trace only the threads of this simulation
+        Trace trace = traces == null ? null : Trace.start(TRACE_CAPACITY);
+        try (ResultLog log = resultLog == null ? null : new ResultLog(
+                resultLog.resolve("shard-" + shard.getFrom() + ResultSummary.SUFFIX), this, shard.getNext(), COMMIT_INTERVAL)) {
+            int uncommitted = 0;
+            while (!shard.isDone() && !cancelled) {
+                long time = log == null ? 0 : System.nanoTime();
+                long index = shard.getNext();
+                boolean won = play(board, agent, index);
+                if (trace != null && (!won && traceFailed || traceSelected.test(index)))
+                    TraceDump.write(traces.resolve("game-" + index + ".trace"), this, index, agent, trace);
+                int revealed = board.countRevealed();
+                shard.record(won, percentRevealed(revealed));
+                if (log != null)
+                    log.record(revealed, agent.getIterations(),
+                            bombs - board.countFlagged(), System.nanoTime() - time);
+                if (++uncommitted == COMMIT_INTERVAL) {
+                    commit(shard, parts, uncommitted, log);
+                    uncommitted = 0;
+                }
+            }
+            commit(shard, parts, uncommitted, log);
+        } finally {
+            if (trace != null)
+                Trace.stop();
+        }
+        merge(agent.getStats());
+    }
+
+    /**
+     * Merge rule statistics of an agent.
+     *
+     * @param stats statistics of the agent's rules
+     */
+    private synchronized void merge(List<RuleStats> stats) {
+        for (RuleStats rule: stats) {
+            RuleStats merged = null;
+            for (RuleStats known: ruleStats)
+                if (known.getName().equals(rule.getName()))
+                    merged = known;
+            if (merged == null) {
+                merged = new RuleStats(rule.getName());
+                ruleStats.add(merged);
+            }
+            merged.add(rule);
+        }
+    }
+
+    /**
+     * Publish progress of a shard and write a checkpoint if it is due.
+     *
+     * @param shard  shard whose progress is published
+     * @param parts  all shards of the simulation
+     * @param played number of games played since last commit
+     * @param log    result log of the shard or null
+     * @throws IOException if the checkpoint or result log can not be written
+     */
+    private void commit(Shard shard, List<Shard> parts, int played, ResultLog log) throws IOException {
+        // results have to be written before a checkpoint may skip their games
+        if (log != null)
+            log.flush();
+        commit(shard, parts, played);
+    }
+
+    /**
+     * Publish progress of a shard and write a checkpoint if it is due.
+     *
+     * @param shard  shard whose progress is published
+     * @param parts  all shards of the simulation
+     * @param played number of games played since last commit
+     * @throws IOException if the checkpoint can not be written
+     */
+    private synchronized void commit(Shard shard, List<Shard> parts, int played) throws IOException {
+        shard.commit();
+        progress.accept(completed.addAndGet(played));
+        long now = System.currentTimeMillis();
+        if (checkpoint != null && now - lastCheckpoint >= checkpointMillis) {
+            Checkpoint.write(checkpoint, this, parts);
+            lastCheckpoint = now;
+        }
+    }
+
+    /**
+     * Stop playing as soon as possible.
+     * Progress up to this point is still checkpointed.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Statistics of the agents' rules merged over all shards played so far.
+     *
+     * @return merged statistics per rule
+     */
+    public synchronized List<RuleStats> getRuleStats() {
+        List<RuleStats> copy = new ArrayList<>(ruleStats.size());
+        for (RuleStats rule: ruleStats) {
+            RuleStats stats = new RuleStats(rule.getName());
+            stats.add(rule);
+            copy.add(stats);
+        }
+        return copy;
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getBombs() {
+        return bombs;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getSimulations() {
+        return simulations;
+    }
+
+    public void setShards(int shards) {
+        if (shards < 1)
+            throw new IllegalArgumentException("at least one shard is required");
+        this.shards = shards;
+    }
+
+    /**
+     * Enable checkpointing.
+     *
+     * @param checkpoint file to write progress to and resume from
+     * @param millis     minimum time between checkpoints
+     */
+    public void setCheckpoint(Path checkpoint, long millis) {
+        this.checkpoint = checkpoint;
+        this.checkpointMillis = millis;
+    }
+
+    /**
+     * Log the result of every game, one file per shard.
+     * Logs are resumed together with the checkpoint,
+     * a run without checkpoint deletes the logs of earlier runs.
+     *
+     * @param directory existing directory or null to disable logging
+     */
+    public void setResultLog(Path directory) {
+        this.resultLog = directory;
+    }
+
+    public Path getResultLog() {
+        return resultLog;
+    }
+
+    /**
+     * Record solver events of every game and dump them for some games.
+     * Only the threads playing this simulation record events, and only while it runs.
+     * Dumps can be stepped through with Replay.
+     *
+     * @param directory existing directory or null to disable tracing
+     * @param failed    dump traces of lost games
+     * @param selected  selects indices of further games to dump traces of or null to select none
+     */
+    public void setTrace(Path directory, boolean failed, LongPredicate selected) {
+        this.traces = directory;
+        this.traceFailed = failed;
+        this.traceSelected = selected == null ? index -> false : selected;
+    }
+
+    public void setProgress(LongConsumer progress) {
+        this.progress = progress;
+    }
+
+}
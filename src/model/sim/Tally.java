@@ -0,0 +1,94 @@
+package model.sim;
+
+/**
+ * Accumulates the outcomes of simulated games.
+ *
+ * Counts games and wins and keeps a histogram
+ * of the percentage of safe squares revealed when the agent stopped.
+ */
+public class Tally {
+
+    public static final int BUCKETS = 101;  // one bucket per percent from 0 to 100
+
+    private long games;             // number of games played
+    private long wins;              // number of games won
+    private final long[] revealed;  // histogram of percentage of safe squares revealed
+
+    /**
+     * Construct empty tally.
+     */
+    public Tally() {
+        this.revealed = new long[BUCKETS];
+    }
+
+    /**
+     * Construct tally from previously recorded values.
+     *
+     * @param games    number of games played
+     * @param wins     number of games won
+     * @param revealed histogram of percentage of safe squares revealed
+     */
+    public Tally(long games, long wins, long[] revealed) {
+        if (revealed.length != BUCKETS)
+            throw new IllegalArgumentException("histogram requires " + BUCKETS + " buckets");
+        this.games = games;
+        this.wins = wins;
+        this.revealed = revealed.clone();
+    }
+
+    /**
+     * Record the outcome of a single game.
+     *
+     * @param won     if the game was won
+     * @param percent percentage of safe squares revealed
+     */
+    public void add(boolean won, int percent) {
+        games++;
+        if (won)
+            wins++;
+        revealed[percent]++;
+    }
+
+    /**
+     * Merge another tally into this one.
+     *
+     * @param other tally to be merged
+     */
+    public void add(Tally other) {
+        games += other.games;
+        wins += other.wins;
+        for (int i = 0; i < BUCKETS; i++)
+            revealed[i] += other.revealed[i];
+    }
+
+    /**
+     * Copy current values into an independent tally.
+     *
+     * @return copy of tally
+     */
+    public Tally copy() {
+        return new Tally(games, wins, revealed);
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long[] getRevealed() {
+        return revealed.clone();
+    }
+
+    /**
+     * Compute win rate in percent.
+     *
+     * @return win rate or 0 if no games were played
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : wins * 100.0 / games;
+    }
+
+}
@@ -0,0 +1,27 @@
+package model.sim;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads of executors that must not keep the JVM alive.
+ */
+public class Threads {
+
+    private Threads() {
+    }
+
+    /**
+     * Create factory for daemon threads.
+     *
+     * @param name name of the threads
+     * @return thread factory
+     */
+    public static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
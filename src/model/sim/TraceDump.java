@@ -0,0 +1,158 @@
+package model.sim;
+
+import model.ai.Agent;
+import model.ai.Rule;
+import model.ai.SubsetRule;
+import model.ai.Trace;
+import model.ai.TrivialRule;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the solver trace of a single game.
+ *
+ * File format:
+ * magic, rows, cols, bombs, start, seed, index of the game,
+ * #rules of the agent, then per rule: its name,
+ * number of events recorded, number of events kept, kept events oldest first.
+ *
+ * The game is addressed by (seed, index), so the board itself is not stored.
+ * The agent is described by its rules, so it can be rebuilt for a replay.
+ */
+public class TraceDump {
+
+    private static final int MAGIC = 0x4D535454;    // "MSTT"
+
+    private final Simulation simulation;    // parameters of the traced game
+    private final long index;               // index of the traced game
+    private final List<String> rules;       // names of the agent's rules in order of application
+    private final long count;               // number of events recorded
+    private final long[] events;            // kept events, oldest first
+
+    /**
+     * Construct dump.
+     *
+     * @param simulation parameters of the traced game
+     * @param index      index of the traced game
+     * @param rules      names of the agent's rules in order of application
+     * @param count      number of events recorded
+     * @param events     kept events, oldest first
+     */
+    public TraceDump(Simulation simulation, long index, List<String> rules, long count, long[] events) {
+        this.simulation = simulation;
+        this.index = index;
+        this.rules = new ArrayList<>(rules);
+        this.count = count;
+        this.events = events;
+    }
+
+    /**
+     * Write trace of the current thread's last game.
+     *
+     * @param path       trace file
+     * @param simulation parameters of the game
+     * @param index      index of the game
+     * @param agent      agent that played the game
+     * @param trace      trace of the game
+     * @throws IOException if the file can not be written
+     */
+    public static void write(Path path, Simulation simulation, long index, Agent agent, Trace trace) throws IOException {
+        long[] events = trace.getEvents();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(simulation.getRows());
+            out.writeInt(simulation.getCols());
+            out.writeInt(simulation.getBombs());
+            out.writeInt(simulation.getStart());
+            out.writeLong(simulation.getSeed());
+            out.writeLong(index);
+            out.writeInt(agent.getRules().size());
+            for (Rule rule: agent.getRules())
+                out.writeUTF(rule.getName());
+            out.writeLong(trace.getCount());
+            out.writeInt(events.length);
+            for (long event: events)
+                out.writeLong(event);
+        }
+    }
+
+    /**
+     * Read a trace file.
+     *
+     * @param path trace file
+     * @return parameters, index and events of the traced game
+     * @throws IOException if the file can not be read
+     */
+    public static TraceDump read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(path + " is not a trace");
+            int rows = in.readInt();
+            int cols = in.readInt();
+            int bombs = in.readInt();
+            int start = in.readInt();
+            long seed = in.readLong();
+            long index = in.readLong();
+            int size = in.readInt();
+            if (size < 0 || size > 1024)
+                throw new IOException(path + " is corrupt: " + size + " rules");
+            List<String> rules = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                rules.add(in.readUTF());
+            long count = in.readLong();
+            int kept = in.readInt();
+            if (kept < 0 || kept > 1 << 30)
+                throw new IOException(path + " is corrupt: " + kept + " events");
+            long[] events = new long[kept];
+            for (int i = 0; i < events.length; i++)
+                events[i] = in.readLong();
+            try {
+                return new TraceDump(new Simulation(rows, cols, bombs, start, seed, index + 1), index, rules, count, events);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + " is corrupt: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Build an agent with the same rules as the traced one.
+     *
+     * @return agent
+     * @throws IOException if a rule can not be rebuilt
+     */
+    public Agent agent() throws IOException {
+        List<Rule> agentRules = new ArrayList<>(rules.size());
+        for (String name: rules) {
+            if (name.equals(new TrivialRule().getName()))
+                agentRules.add(new TrivialRule());
+            else if (name.equals(new SubsetRule().getName()))
+                agentRules.add(new SubsetRule());
+            else
+                throw new IOException("can not replay an agent with rule " + name);
+        }
+        if (agentRules.isEmpty())
+            throw new IOException("can not replay an agent without rules");
+        return new Agent(agentRules);
+    }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long[] getEvents() {
+        return events.clone();
+    }
+
+}
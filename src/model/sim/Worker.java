@@ -0,0 +1,97 @@
+package model.sim;
+
+import model.ai.Agent;
+import model.game.Board;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plays games handed out by a {@link Coordinator}.
+ *
+ * Every connection is served by its own thread with its own board and agent.
+ */
+public class Worker {
+
+    private static final long FLUSH_NANOS = 1_000_000_000L;    // maximum time results are held back
+
+    private Worker() {
+    }
+
+    /**
+     * Play shards received over a connection until told to quit.
+     *
+     * @param socket connection to coordinator
+     * @throws IOException if the connection fails
+     */
+    public static void serve(Socket socket) throws IOException {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 1 << 16);
+            int rows = in.readInt();
+            int cols = in.readInt();
+            int bombs = in.readInt();
+            int start = in.readInt();
+            long seed = in.readLong();
+
+            Simulation simulation = new Simulation(rows, cols, bombs, start, seed, 0);
+            Board board = new Board(rows, cols, bombs);
+            Agent agent = new Agent();
+
+            while (in.readByte() == Coordinator.SHARD) {
+                long from = in.readLong();
+                long to = in.readLong();
+                long flushed = System.nanoTime();
+                for (long index = from; index < to; index++) {
+                    boolean won = simulation.play(board, agent, index);
+                    out.write((won ? Coordinator.WON : 0) | simulation.percentRevealed(board));
+                    // results are buffered but should not be held back too long
+                    // or the coordinator considers the worker dead
+                    long now = System.nanoTime();
+                    if (now - flushed > FLUSH_NANOS) {
+                        out.flush();
+                        flushed = now;
+                    }
+                }
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Connect to a coordinator from the command line.
+     *
+     * Arguments:
+     * host port [connections]
+     *
+     * @param args command line arguments
+     * @throws InterruptedException if interrupted while waiting for connections
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: Worker host port [connections]");
+            System.exit(2);
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    serve(new Socket(host, port));
+                } catch (IOException e) {
+                    System.err.println("connection to " + host + ":" + port + " failed: " + e.getMessage());
+                }
+            }, "worker-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread: threads)
+            thread.join();
+    }
+
+}
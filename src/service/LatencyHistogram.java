@@ -0,0 +1,111 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records latencies in logarithmic buckets without locking.
+ *
+ * Every power of two of microseconds is split into 16 linear sub-buckets,
+ * so reported percentiles are accurate to about 6%.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;                      // sub-buckets per power of two as bits
+    private static final int SUB = 1 << SUB_BITS;               // sub-buckets per power of two
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;   // enough for any long
+
+    private final AtomicLongArray counts;   // number of recorded latencies per bucket
+
+    /**
+     * Construct empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+    }
+
+    /**
+     * Determine bucket of a latency.
+     *
+     * @param micros latency in microseconds
+     * @return index of bucket
+     */
+    private static int bucket(long micros) {
+        if (micros < SUB)
+            return (int) micros;
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        return shift * SUB + (int) (micros >>> shift);
+    }
+
+    /**
+     * Determine upper bound of a bucket.
+     *
+     * @param bucket index of bucket
+     * @return highest latency in microseconds falling into the bucket
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB)
+            return bucket;
+        int shift = bucket / SUB - 1;
+        long mantissa = bucket % SUB + SUB;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Count recorded latencies.
+     *
+     * @return number of recorded latencies
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * Estimate a percentile.
+     *
+     * @param percentile between 0 and 100
+     * @return upper bound of latency in microseconds or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += snapshot[i] = counts.get(i);
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank))
+                return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Summarize count and common percentiles.
+     *
+     * @return one line summary in microseconds
+     */
+    public String summary() {
+        return "count=" + count()
+                + " p50=" + percentile(50) + "us"
+                + " p90=" + percentile(90) + "us"
+                + " p99=" + percentile(99) + "us"
+                + " p99.9=" + percentile(99.9) + "us"
+                + " max=" + percentile(100) + "us";
+    }
+
+}
@@ -0,0 +1,181 @@
+package service;
+
+import model.ai.Agent;
+import model.game.Board;
+import model.sim.Simulation;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends solve requests to a running {@link SolveService} and reports latencies.
+ *
+ * Request bodies are the states of generated boards after the agent stalled,
+ * i.e. the states a player would ask the service about.
+ */
+public class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    /**
+     * Generate request bodies.
+     *
+     * @param count number of bodies
+     * @param seed  seed of the generated boards
+     * @return list of request bodies
+     */
+    public static List<String> bodies(int count, long seed) {
+        List<String> bodies = new ArrayList<>(count);
+        Board board = new Board(16, 30, 99);
+        Agent agent = new Agent();
+        for (int i = 0; i < count; i++) {
+            board.generate(255, Simulation.random(seed, i));
+            // alternate between opening states and stalled states
+            if (i % 2 == 1)
+                agent.solve(board);
+            bodies.add(SolveService.encode(board));
+        }
+        return bodies;
+    }
+
+    /**
+     * Send requests from a fixed number of threads,
+     * each sending its next request as soon as the previous one is answered.
+     *
+     * @param client      http client
+     * @param uri         solve endpoint
+     * @param bodies      request bodies, used round robin
+     * @param requests    number of requests
+     * @param concurrency number of threads
+     * @param latency     receives the time from sending a request to its response
+     * @param errors      counts failed requests
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static void closedLoop(HttpClient client, URI uri, List<String> bodies, int requests, int concurrency,
+                                   LatencyHistogram latency, AtomicLong errors) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int t = 0; t < concurrency; t++) {
+            Thread thread = new Thread(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request(uri, bodies, i),
+                                HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200)
+                            errors.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    latency.record(System.nanoTime() - sent);
+                }
+            }, "load-" + t);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread: threads)
+            thread.join();
+    }
+
+    /**
+     * Send requests at a fixed rate, whether or not earlier ones were answered.
+     *
+     * Latency is measured from the time a request was scheduled to be sent.
+     * A closed loop stops sending while the server stalls and so never sees
+     * the requests that would have queued up meanwhile (coordinated omission),
+     * here they are sent late and the delay counts towards their latency.
+     *
+     * @param client   http client
+     * @param uri      solve endpoint
+     * @param bodies   request bodies, used round robin
+     * @param requests number of requests
+     * @param rate     requests per second
+     * @param latency  receives the time from scheduling a request to its response
+     * @param errors   counts failed requests
+     * @throws InterruptedException if interrupted while sending or waiting for responses
+     */
+    private static void openLoop(HttpClient client, URI uri, List<String> bodies, int requests, double rate,
+                                 LatencyHistogram latency, AtomicLong errors) throws InterruptedException {
+        CountDownLatch answered = new CountDownLatch(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            long scheduled = start + (long) (i * 1e9 / rate);
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            client.sendAsync(request(uri, bodies, i), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, e) -> {
+                        if (e != null || response.statusCode() != 200)
+                            errors.incrementAndGet();
+                        latency.record(System.nanoTime() - scheduled);
+                        answered.countDown();
+                    });
+        }
+        answered.await();
+    }
+
+    /**
+     * Build a solve request.
+     *
+     * @param uri    solve endpoint
+     * @param bodies request bodies
+     * @param i      number of the request
+     * @return request with the i-th body, round robin
+     */
+    private static HttpRequest request(URI uri, List<String> bodies, int i) {
+        return HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofString(bodies.get(i % bodies.size())))
+                .build();
+    }
+
+    /**
+     * Load a solve service from the command line.
+     *
+     * Arguments:
+     * [url] [concurrency] [requests] [rate]
+     *
+     * Without a rate, concurrency threads send requests in a closed loop.
+     * With a rate in requests per second, requests are sent in an open loop at that rate
+     * and concurrency is ignored.
+     *
+     * @param args command line arguments
+     * @throws Exception if interrupted
+     */
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080/solve");
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        double rate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+        List<String> bodies = bodies(1024, 1);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+
+        long time = System.nanoTime();
+        if (rate > 0)
+            openLoop(client, uri, bodies, requests, rate, latency, errors);
+        else
+            closedLoop(client, uri, bodies, requests, concurrency, latency, errors);
+        double duration = (System.nanoTime() - time) / 1e9;
+
+        System.out.println("client: " + latency.summary() + " errors=" + errors.get()
+                + " throughput=" + Math.round(requests / duration) + "/s");
+        HttpResponse<String> stats = client.send(HttpRequest.newBuilder(uri.resolve("/stats")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        System.out.print("server: " + stats.body());
+    }
+
+}
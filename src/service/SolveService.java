@@ -0,0 +1,403 @@
+package service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.ai.Agent;
+import model.ai.Deduction;
+import model.game.Board;
+import model.game.Square;
+import model.sim.Threads;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * Serves deductions of the agent over HTTP on localhost.
+ *
+ * POST /solve with a board state as body, first line "rows cols",
+ * then one line per row with "." for hidden, "-" for flagged
+ * and the value for revealed squares, as printed by Board.printV.
+ * Responds with two lines "safe: ids" and "mines: ids".
+ *
+ * GET /stats responds with a summary of the server side latency histogram.
+ *
+ * Requests are queued and handed to a pool of warmed up solver threads in batches:
+ * a batch is dispatched once it is full or the oldest request waited long enough.
+ *
+ * Load is bounded at every stage: connections wait for a fixed pool of handler threads
+ * in a bounded queue and are closed when it is full, requests beyond MAX_PENDING
+ * and requests not solved within REQUEST_TIMEOUT_MILLIS are answered with 503.
+ */
+public class SolveService {
+
+    private static final int MAX_SQUARES = 1 << 20;    // largest board accepted in a request
+    // longest body of such a board: every square, a line break per row and the dimensions
+    private static final int MAX_BODY = 2 * MAX_SQUARES + 32;
+    private static final int HTTP_THREADS = 256;                // handler threads, each waits for one request
+    private static final int HTTP_BACKLOG = 1024;               // exchanges waiting for a handler thread
+    private static final int MAX_PENDING = 128;                 // requests queued or being solved
+    private static final long REQUEST_TIMEOUT_MILLIS = 5000;    // time a request may wait for its deduction
+
+    /**
+     * Request waiting to be solved.
+     */
+    private static class Request {
+
+        final Board board;                          // observed board
+        final CompletableFuture<Deduction> result;  // completed by a solver thread
+
+        Request(Board board) {
+            this.board = board;
+            this.result = new CompletableFuture<>();
+        }
+
+    }
+
+    private final int maxBatch;                     // maximum number of requests per batch
+    private final long maxWaitNanos;                // maximum time the first request of a batch waits
+    private final BlockingQueue<Request> queue;     // requests not yet dispatched
+    private final Semaphore pending;                // permits for requests queued or being solved
+    private final ExecutorService solvers;          // solver threads
+    private final ThreadLocal<Agent> agents;        // agent per solver thread
+    private final LatencyHistogram latency;         // time from receiving a request to responding
+    private HttpServer server;                      // http server or null if not started
+    private ExecutorService handlers;               // http handler threads or null if not started
+
+    /**
+     * Construct service.
+     *
+     * @param threads      number of solver threads
+     * @param maxBatch     maximum number of requests per batch
+     * @param maxWaitNanos maximum time the first request of a batch waits for more
+     */
+    public SolveService(int threads, int maxBatch, long maxWaitNanos) {
+        if (threads < 1 || maxBatch < 1)
+            throw new IllegalArgumentException("threads and batch size have to be positive");
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = maxWaitNanos;
+        this.queue = new ArrayBlockingQueue<>(MAX_PENDING);
+        this.pending = new Semaphore(MAX_PENDING);
+        this.solvers = Executors.newFixedThreadPool(threads, Threads.daemon("solve"));
+        this.agents = ThreadLocal.withInitial(Agent::new);
+        this.latency = new LatencyHistogram();
+    }
+
+    /**
+     * Warm up solver threads and start serving on localhost.
+     *
+     * @param port port to listen on, 0 for any free port
+     * @return port the service listens on
+     * @throws IOException if the port can not be bound
+     */
+    public int start(int port) throws IOException {
+        warmUp();
+        // small responses otherwise wait for delayed acknowledgements
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+        // the server closes connections it can not hand to a thread
+        handlers = new ThreadPoolExecutor(HTTP_THREADS, HTTP_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(HTTP_BACKLOG), Threads.daemon("http"));
+        server.setExecutor(handlers);
+        server.start();
+
+        Thread batcher = new Thread(this::dispatch, "batcher");
+        batcher.setDaemon(true);
+        batcher.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stop serving.
+     */
+    public void stop() {
+        if (server != null)
+            server.stop(0);
+        if (handlers != null)
+            handlers.shutdownNow();
+        solvers.shutdownNow();
+    }
+
+    /**
+     * Solve generated boards on every solver thread
+     * so the first requests do not run interpreted code.
+     */
+    private void warmUp() {
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int t = 0; t < 64; t++) {
+            long seed = t;
+            tasks.add(() -> {
+                Random random = new Random(seed);
+                Board board = new Board(16, 30, 99);
+                for (int i = 0; i < 200; i++) {
+                    board.generate(255, random);
+                    agents.get().deduce(decode(encode(board)));
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Object> future: solvers.invokeAll(tasks))
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("warm up failed", e.getCause());
+        }
+    }
+
+    /**
+     * Collect queued requests into batches and hand them to the solver threads.
+     */
+    private void dispatch() {
+        try {
+            while (true) {
+                List<Request> batch = new ArrayList<>(maxBatch);
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                // fill batch with whatever is queued, then wait for more until the deadline
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0)
+                        continue;
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0)
+                        break;
+                    Request request = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (request == null)
+                        break;
+                    batch.add(request);
+                }
+                solvers.execute(() -> solve(batch));
+            }
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // service was stopped
+        }
+    }
+
+    /**
+     * Solve a batch of requests on the current thread.
+     *
+     * @param batch requests to be solved
+     */
+    private void solve(List<Request> batch) {
+        Agent agent = agents.get();
+        for (Request request: batch) {
+            // skip requests that timed out while queued
+            if (request.result.isDone())
+                continue;
+            try {
+                request.result.complete(agent.deduce(request.board));
+            } catch (RuntimeException e) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Handle POST /solve.
+     *
+     * @param exchange http exchange
+     * @throws IOException if the response can not be sent
+     */
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        long time = System.nanoTime();
+        try (HttpExchange e = exchange) {
+            if (!"POST".equals(e.getRequestMethod())) {
+                respond(e, 405, "use POST\n");
+                return;
+            }
+            // refuse oversized bodies before reading them, the server has already validated the length
+            String length = e.getRequestHeaders().getFirst("Content-Length");
+            byte[] body = length != null && Long.parseLong(length) > MAX_BODY
+                    ? null
+                    : e.getRequestBody().readNBytes(MAX_BODY + 1);
+            if (body == null || body.length > MAX_BODY) {
+                respond(e, 413, "request bodies are limited to " + MAX_BODY + " bytes\n");
+                return;
+            }
+            Board board;
+            try {
+                board = decode(new String(body, StandardCharsets.US_ASCII));
+            } catch (IllegalArgumentException ex) {
+                respond(e, 400, ex.getMessage() + "\n");
+                return;
+            }
+            if (!pending.tryAcquire()) {
+                respond(e, 503, "overloaded, " + MAX_PENDING + " requests pending\n");
+                return;
+            }
+            Request request = new Request(board);
+            try {
+                // timed out requests may still hold a slot until they are dispatched
+                if (!queue.offer(request)) {
+                    respond(e, 503, "overloaded, queue is full\n");
+                    return;
+                }
+                Deduction deduction = request.result.get(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                respond(e, 200, "safe:" + join(deduction.getSafe()) + "\nmines:" + join(deduction.getMines()) + "\n");
+            } catch (TimeoutException ex) {
+                request.result.cancel(false);
+                respond(e, 503, "not solved within " + REQUEST_TIMEOUT_MILLIS + " ms\n");
+            } catch (ExecutionException ex) {
+                respond(e, 500, ex.getCause() + "\n");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                respond(e, 503, "interrupted\n");
+            } finally {
+                pending.release();
+            }
+        } finally {
+            latency.record(System.nanoTime() - time);
+        }
+    }
+
+    /**
+     * Handle GET /stats.
+     *
+     * @param exchange http exchange
+     * @throws IOException if the response can not be sent
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (HttpExchange e = exchange) {
+            respond(e, 200, latency.summary() + "\n");
+        }
+    }
+
+    /**
+     * Send a plain text response.
+     *
+     * @param exchange http exchange
+     * @param status   http status code
+     * @param body     response body
+     * @throws IOException if the response can not be sent
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.US_ASCII);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Join ids separated by spaces.
+     *
+     * @param ids list of ids
+     * @return ids each preceded by a space
+     */
+    private static String join(ArrayList<Integer> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (int id: ids)
+            sb.append(' ').append(id);
+        return sb.toString();
+    }
+
+    /**
+     * Encode what a player sees of a board as request body.
+     *
+     * @param board board
+     * @return request body
+     */
+    public static String encode(Board board) {
+        ArrayList<Square> squares = board.getSquares();
+        StringBuilder sb = new StringBuilder();
+        sb.append(board.getRows()).append(' ').append(board.getCols());
+        for (int i = 0; i < squares.size(); i++) {
+            if (i % board.getCols() == 0) sb.append("\n");
+            Square s = squares.get(i);
+            if (s.isFlagged())
+                sb.append("-");
+            else if (s.isHidden())
+                sb.append(".");
+            else
+                sb.append(s.getValue());
+        }
+        return sb.append("\n").toString();
+    }
+
+    /**
+     * Decode request body into an observed board.
+     *
+     * @param body request body
+     * @return observed board
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    public static Board decode(String body) {
+        String[] lines = body.trim().split("\\s*\\n\\s*");
+        String[] dimensions = lines[0].trim().split("\\s+");
+        if (dimensions.length != 2)
+            throw new IllegalArgumentException("first line has to be: rows cols");
+        int rows;
+        int cols;
+        try {
+            rows = Integer.parseInt(dimensions[0]);
+            cols = Integer.parseInt(dimensions[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("first line has to be: rows cols");
+        }
+        if (rows < 1 || cols < 1 || (long) rows * cols > MAX_SQUARES)
+            throw new IllegalArgumentException("boards have to have between 1 and " + MAX_SQUARES + " squares");
+        if (lines.length != rows + 1)
+            throw new IllegalArgumentException("expected " + rows + " rows");
+        // check the body before allocating anything proportional to the claimed size
+        for (int r = 0; r < rows; r++)
+            if (lines[r + 1].length() != cols)
+                throw new IllegalArgumentException("row " + r + " has to have " + cols + " squares");
+
+        int[] values = new int[rows * cols];
+        boolean[] flagged = new boolean[rows * cols];
+        for (int r = 0; r < rows; r++) {
+            String line = lines[r + 1];
+            for (int c = 0; c < cols; c++) {
+                int id = r * cols + c;
+                char square = line.charAt(c);
+                if (square == '.')
+                    values[id] = Board.UNKNOWN;
+                else if (square == '-') {
+                    values[id] = Board.UNKNOWN;
+                    flagged[id] = true;
+                } else if (square >= '0' && square <= '8')
+                    values[id] = square - '0';
+                else
+                    throw new IllegalArgumentException("invalid square '" + square + "' in row " + r);
+            }
+        }
+        return Board.observe(rows, cols, values, flagged);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Run the service from the command line until killed.
+     *
+     * Arguments:
+     * [port] [threads] [max batch] [max wait in microseconds]
+     *
+     * @param args command line arguments
+     * @throws Exception if the service can not be started
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int maxBatch = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        long maxWait = args.length > 3 ? Long.parseLong(args[3]) : 50;
+
+        SolveService service = new SolveService(threads, maxBatch, maxWait * 1000);
+        port = service.start(port);
+        System.out.println("serving on http://localhost:" + port + "/solve");
+        Thread.currentThread().join();
+    }
+
+}